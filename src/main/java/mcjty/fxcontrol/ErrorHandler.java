@@ -15,24 +15,34 @@ public class ErrorHandler {
 
     private static Set<String> errors = new HashSet<>();
 
-    public static void clearErrors() {
+    public static synchronized void clearErrors() {
         errors.clear();
     }
 
-    // Publish an error and notify all players of that error
+    // Publish an error and notify all players of that error. This can be called from any thread
     public static void error(String message) {
-        errors.add(message);
+        synchronized (ErrorHandler.class) {
+            errors.add(message);
+        }
         FxControl.setup.getLogger().error(message);
         // Notify all logged in players
         MinecraftServer server = ServerLifecycleHooks.getCurrentServer();
         if (server != null) {
-            for (ServerPlayerEntity player : server.getPlayerList().getPlayers()) {
-                player.sendMessage(new StringTextComponent(TextFormatting.RED + "FxControl Error: " + TextFormatting.GOLD + message), Util.NIL_UUID);
+            if (server.isSameThread()) {
+                notifyPlayers(server, message);
+            } else {
+                server.execute(() -> notifyPlayers(server, message));
             }
         }
     }
 
-    public static void onPlayerJoinWorld(PlayerEvent.PlayerLoggedInEvent event) {
+    private static void notifyPlayers(MinecraftServer server, String message) {
+        for (ServerPlayerEntity player : server.getPlayerList().getPlayers()) {
+            player.sendMessage(new StringTextComponent(TextFormatting.RED + "FxControl Error: " + TextFormatting.GOLD + message), Util.NIL_UUID);
+        }
+    }
+
+    public static synchronized void onPlayerJoinWorld(PlayerEvent.PlayerLoggedInEvent event) {
         for (String error : errors) {
             event.getPlayer().sendMessage(new StringTextComponent(TextFormatting.RED + "FxControl Error: " + TextFormatting.GOLD + error), Util.NIL_UUID);
         }
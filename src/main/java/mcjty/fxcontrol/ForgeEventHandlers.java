@@ -2,14 +2,36 @@ package mcjty.fxcontrol;
 
 import mcjty.fxcontrol.commands.ModCommands;
 import mcjty.fxcontrol.rules.*;
+import mcjty.fxcontrol.compat.ModRuleCompatibilityLayer;
+import mcjty.fxcontrol.setup.Config;
+import mcjty.tools.cache.BlockProbeCache;
+import mcjty.tools.cache.CacheManager;
+import mcjty.tools.cache.ChunkPrefetcher;
+import mcjty.tools.cache.ChunkSummaryProvider;
+import mcjty.tools.cache.ChunkWarmer;
+import mcjty.tools.cache.StructureCache;
+import mcjty.tools.cache.TickCache;
+import mcjty.tools.rules.ActionBudget;
+import mcjty.tools.rules.EquipmentSnapshot;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.text.TranslationTextComponent;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.server.ServerWorld;
 import net.minecraftforge.event.RegisterCommandsEvent;
+import net.minecraftforge.event.AttachCapabilitiesEvent;
 import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.living.LivingEquipmentChangeEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.event.entity.player.PlayerInteractEvent;
 import net.minecraftforge.event.world.BlockEvent;
+import net.minecraftforge.event.world.ChunkEvent;
 import net.minecraftforge.eventbus.api.Event;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.LogicalSide;
+import net.minecraftforge.fml.event.server.FMLServerStartedEvent;
 import org.apache.logging.log4j.Level;
 
 import java.util.HashMap;
@@ -19,6 +41,9 @@ public class ForgeEventHandlers {
 
     public static boolean debug = false;
 
+    private static final ResourceLocation CHUNK_SUMMARY = new ResourceLocation(FxControl.MODID, "summary");
+    private static final ModRuleCompatibilityLayer COMPATIBILITY = new ModRuleCompatibilityLayer();
+
     @SubscribeEvent
     public void serverLoad(RegisterCommandsEvent event) {
         ModCommands.register(event.getDispatcher());
@@ -130,6 +155,77 @@ public class ForgeEventHandlers {
         }
     }
 
+    @SubscribeEvent
+    public void onAttachChunkCapabilities(AttachCapabilitiesEvent<Chunk> event) {
+        if (event.getObject().getLevel() == null || event.getObject().getLevel().isClientSide()) {
+            return;
+        }
+        event.addCapability(CHUNK_SUMMARY, new ChunkSummaryProvider(event.getObject()));
+    }
+
+    @SubscribeEvent
+    public void onChunkUnload(ChunkEvent.Unload event) {
+        if (event.getWorld() == null || event.getWorld().isClientSide()) {
+            return;
+        }
+        StructureCache.CACHE.onChunkUnload(event.getWorld(), event.getChunk().getPos());
+    }
+
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.START) {
+            return;
+        }
+        ActionBudget.BUDGET.setLimits(Config.ACTION_BUDGET.get(), Config.ACTION_QUEUE_SIZE.get());
+        ActionBudget.BUDGET.tick();
+        BlockProbeCache.CACHE.setTtl(Config.BLOCK_PROBE_TTL.get());
+        TickCache.CACHE.setFastSeeSky(Config.FAST_SEESKY.get());
+        CacheManager.MANAGER.setBudget(Config.CACHE_MEMORY_BUDGET.get() * 1024L * 1024L);
+        ChunkWarmer.WARMER.setChunksPerTick(Config.WARMUP_CHUNKS_PER_TICK.get());
+        ChunkWarmer.WARMER.tick(COMPATIBILITY);
+    }
+
+    @SubscribeEvent
+    public void onServerStarted(FMLServerStartedEvent event) {
+        if (Config.WARMUP_RADIUS.get() > 0) {
+            ServerWorld overworld = event.getServer().overworld();
+            BlockPos spawn = overworld.getSharedSpawnPos();
+            ChunkWarmer.WARMER.warmArea(overworld, spawn.getX() >> 4, spawn.getZ() >> 4, Config.WARMUP_RADIUS.get(), 0);
+        }
+    }
+
+    @SubscribeEvent
+    public void onPlayerLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
+        warmAroundPlayer(event.getPlayer());
+    }
+
+    @SubscribeEvent
+    public void onPlayerChangedDimension(PlayerEvent.PlayerChangedDimensionEvent event) {
+        warmAroundPlayer(event.getPlayer());
+    }
+
+    private static void warmAroundPlayer(PlayerEntity player) {
+        if (player instanceof ServerPlayerEntity && Config.WARMUP_RADIUS.get() > 0) {
+            // Give the chunks around the player some time to load
+            ChunkWarmer.WARMER.warmArea(((ServerPlayerEntity) player).getLevel(), player.xChunk, player.zChunk, Config.WARMUP_RADIUS.get(), 20);
+        }
+    }
+
+    @SubscribeEvent
+    public void onEquipmentChange(LivingEquipmentChangeEvent event) {
+        if (event.getEntityLiving() instanceof PlayerEntity && !event.getEntityLiving().level.isClientSide) {
+            EquipmentSnapshot.onEquipmentChange((PlayerEntity) event.getEntityLiving(), event.getSlot(), event.getTo());
+        }
+    }
+
+    @SubscribeEvent
+    public void onNeighborNotify(BlockEvent.NeighborNotifyEvent event) {
+        if (event.getWorld().isClientSide()) {
+            return;
+        }
+        BlockProbeCache.CACHE.invalidate(event.getWorld(), event.getPos());
+    }
+
     @SubscribeEvent
     public void onPlayerTick(TickEvent.PlayerTickEvent event) {
         if (event.phase != TickEvent.Phase.END) {
@@ -138,6 +234,9 @@ public class ForgeEventHandlers {
         if (event.side != LogicalSide.SERVER) {
             return;
         }
+        if (event.player instanceof ServerPlayerEntity) {
+            ChunkPrefetcher.update((ServerPlayerEntity) event.player, Config.PREFETCH_DISTANCE.get());
+        }
 
         int id = event.player.getId();
         if (!tickCounters.containsKey(id)) {
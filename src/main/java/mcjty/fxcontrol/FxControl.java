@@ -1,8 +1,17 @@
 package mcjty.fxcontrol;
 
 
+import mcjty.fxcontrol.setup.Config;
 import mcjty.fxcontrol.setup.ModSetup;
+import mcjty.tools.cache.BlockProbeCache;
+import mcjty.tools.cache.ChunkPrefetcher;
+import mcjty.tools.cache.ChunkWarmer;
 import mcjty.tools.cache.StructureCache;
+import mcjty.tools.cache.TickCache;
+import mcjty.tools.rules.ActionBudget;
+import mcjty.tools.rules.CooldownStore;
+import mcjty.tools.rules.PlayerSlots;
+import mcjty.tools.varia.LookAtTools;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.event.lifecycle.FMLCommonSetupEvent;
@@ -17,8 +26,18 @@ public class FxControl {
     public static ModSetup setup = new ModSetup();
 
     public FxControl() {
+        Config.register();
         FMLJavaModLoadingContext.get().getModEventBus().addListener((FMLCommonSetupEvent event) -> setup.init());
+        // Stop the warm-up first so that it doesn't use the caches that are cleaned below
+        MinecraftForge.EVENT_BUS.addListener((FMLServerStoppedEvent event) -> ChunkWarmer.WARMER.clean());
         MinecraftForge.EVENT_BUS.addListener((FMLServerStoppedEvent event) -> StructureCache.CACHE.clean());
+        MinecraftForge.EVENT_BUS.addListener((FMLServerStoppedEvent event) -> PlayerSlots.reset());
+        MinecraftForge.EVENT_BUS.addListener((FMLServerStoppedEvent event) -> CooldownStore.clean());
+        MinecraftForge.EVENT_BUS.addListener((FMLServerStoppedEvent event) -> ActionBudget.BUDGET.clear());
+        MinecraftForge.EVENT_BUS.addListener((FMLServerStoppedEvent event) -> BlockProbeCache.CACHE.clean());
+        MinecraftForge.EVENT_BUS.addListener((FMLServerStoppedEvent event) -> LookAtTools.clearMemos());
+        MinecraftForge.EVENT_BUS.addListener((FMLServerStoppedEvent event) -> TickCache.CACHE.clean());
+        MinecraftForge.EVENT_BUS.addListener((FMLServerStoppedEvent event) -> ChunkPrefetcher.clean());
         MinecraftForge.EVENT_BUS.addListener(ErrorHandler::onPlayerJoinWorld);
     }
 }
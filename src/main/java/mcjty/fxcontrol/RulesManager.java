@@ -1,15 +1,25 @@
 package mcjty.fxcontrol;
 
 import com.google.gson.*;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import mcjty.fxcontrol.rules.*;
+import mcjty.tools.rules.RuleBase;
 import org.apache.logging.log4j.Level;
 
 import java.io.*;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.function.Function;
 
+/**
+ * Reads all rule files. The files are read and parsed to JSON in parallel on a dedicated
+ * fork-join pool. The rules themselves are compiled on the calling thread because that creates
+ * item stacks and looks up blocks and items, and that isn't safe on other threads
+ */
 public class RulesManager {
 
     private static String path;
@@ -20,11 +30,6 @@ public class RulesManager {
     public static List<LeftClickRule> leftclickRules = new ArrayList<>();
 
     public static void reloadRules() {
-        effectRules.clear();
-        harvestRules.clear();
-        placeRules.clear();
-        rightclickRules.clear();
-        leftclickRules.clear();
         readAllRules();
     }
 
@@ -47,11 +52,44 @@ public class RulesManager {
             directory.mkdir();
         }
 
-        safeCall("effects.json", () -> readRules(path, "effects.json", EffectRule::parse, effectRules));
-        safeCall("breakevents.json", () -> readRules(path, "breakevents.json", HarvestRule::parse, harvestRules));
-        safeCall("placeevents.json", () -> readRules(path, "placeevents.json", PlaceRule::parse, placeRules));
-        safeCall("rightclicks.json", () -> readRules(path, "rightclicks.json", RightClickRule::parse, rightclickRules));
-        safeCall("leftclicks.json", () -> readRules(path, "leftclicks.json", LeftClickRule::parse, leftclickRules));
+        // The new rules are only made active when all files are read
+        List<EffectRule> effects = new ArrayList<>();
+        List<HarvestRule> harvests = new ArrayList<>();
+        List<PlaceRule> places = new ArrayList<>();
+        List<RightClickRule> rightclicks = new ArrayList<>();
+        List<LeftClickRule> leftclicks = new ArrayList<>();
+
+        ForkJoinPool pool = createPool();
+        try {
+            ForkJoinTask<JsonElement> effectsJson = pool.submit(() -> getRootElement(path, "effects.json"));
+            ForkJoinTask<JsonElement> harvestsJson = pool.submit(() -> getRootElement(path, "breakevents.json"));
+            ForkJoinTask<JsonElement> placesJson = pool.submit(() -> getRootElement(path, "placeevents.json"));
+            ForkJoinTask<JsonElement> rightclicksJson = pool.submit(() -> getRootElement(path, "rightclicks.json"));
+            ForkJoinTask<JsonElement> leftclicksJson = pool.submit(() -> getRootElement(path, "leftclicks.json"));
+
+            safeCall("effects.json", () -> readRules("effects.json", effectsJson, EffectRule::parse, effects));
+            safeCall("breakevents.json", () -> readRules("breakevents.json", harvestsJson, HarvestRule::parse, harvests));
+            safeCall("placeevents.json", () -> readRules("placeevents.json", placesJson, PlaceRule::parse, places));
+            safeCall("rightclicks.json", () -> readRules("rightclicks.json", rightclicksJson, RightClickRule::parse, rightclicks));
+            safeCall("leftclicks.json", () -> readRules("leftclicks.json", leftclicksJson, LeftClickRule::parse, leftclicks));
+        } finally {
+            pool.shutdown();
+        }
+
+        effectRules = effects;
+        harvestRules = harvests;
+        placeRules = places;
+        rightclickRules = rightclicks;
+        leftclickRules = leftclicks;
+    }
+
+    // Only used for reading and parsing the files. Nothing on these threads touches the game
+    private static ForkJoinPool createPool() {
+        return new ForkJoinPool(Runtime.getRuntime().availableProcessors(), p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("FxControl rule loader " + thread.getPoolIndex());
+            return thread;
+        }, null, false);
     }
 
     private static void safeCall(String name, Runnable code) {
@@ -63,15 +101,21 @@ public class RulesManager {
         }
     }
 
-    private static <T> void readRules(String path, String filename, Function<JsonElement, T> parser, List<T> rules) {
-        JsonElement element = getRootElement(path, filename);
+    private static <T> void readRules(String filename, ForkJoinTask<JsonElement> file, Function<JsonElement, T> parser, List<T> rules) {
+        JsonElement element = file.join();
         if (element == null) {
             return;
         }
+        Object2IntOpenHashMap<String> occurrences = new Object2IntOpenHashMap<>();
         int i = 0;
         for (JsonElement entry : element.getAsJsonArray()) {
             T rule = parser.apply(entry);
             if (rule != null) {
+                // The key only depends on the file and the contents of the rule so it survives a reload
+                // as long as the rule isn't changed. Identical rules in the same file are numbered
+                String key = filename + "/" + Integer.toHexString(entry.toString().hashCode());
+                key += "/" + occurrences.addTo(key, 1);
+                ((RuleBase<?>) rule).setRuleKey(key);
                 rules.add(rule);
             } else {
                 FxControl.setup.getLogger().log(Level.ERROR, "Rule " + i + " in " + filename + " is invalid, skipping!");
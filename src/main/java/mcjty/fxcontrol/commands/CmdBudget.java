@@ -0,0 +1,40 @@
+package mcjty.fxcontrol.commands;
+
+import com.mojang.brigadier.Command;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import mcjty.tools.rules.ActionBudget;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraft.util.Util;
+import net.minecraft.util.text.StringTextComponent;
+import net.minecraft.util.text.TextFormatting;
+
+public class CmdBudget implements Command<CommandSource> {
+
+    private static final CmdBudget CMD = new CmdBudget();
+
+    public static ArgumentBuilder<CommandSource, ?> register(CommandDispatcher<CommandSource> dispatcher) {
+        return Commands.literal("budget")
+                .requires(cs -> cs.hasPermission(1))
+                .executes(CMD);
+    }
+
+    @Override
+    public int run(CommandContext<CommandSource> context) throws CommandSyntaxException {
+        ServerPlayerEntity player = context.getSource().getPlayerOrException();
+        if (player != null) {
+            ActionBudget budget = ActionBudget.BUDGET;
+            player.sendMessage(new StringTextComponent(TextFormatting.GOLD + "Queue depth: " + TextFormatting.WHITE + budget.getQueueDepth()
+                    + " (max " + budget.getMaxDepth() + ")"), Util.NIL_UUID);
+            player.sendMessage(new StringTextComponent(TextFormatting.GOLD + "Executed: " + TextFormatting.WHITE + budget.getExecuted()
+                    + ", delayed " + budget.getDelayed() + ", dropped " + budget.getDropped()), Util.NIL_UUID);
+            player.sendMessage(new StringTextComponent(TextFormatting.GOLD + "Time in queue: " + TextFormatting.WHITE
+                    + String.format("%.2f", budget.getAverageWait()) + " ticks average, " + budget.getMaxWait() + " ticks max"), Util.NIL_UUID);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,61 @@
+package mcjty.fxcontrol.commands;
+
+import com.mojang.brigadier.Command;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import mcjty.tools.cache.CacheManager;
+import mcjty.tools.cache.CacheStats;
+import mcjty.tools.cache.ManagedCache;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraft.util.Util;
+import net.minecraft.util.text.StringTextComponent;
+import net.minecraft.util.text.TextFormatting;
+
+public class CmdCache implements Command<CommandSource> {
+
+    private static final CmdCache CMD = new CmdCache();
+
+    public static ArgumentBuilder<CommandSource, ?> register(CommandDispatcher<CommandSource> dispatcher) {
+        return Commands.literal("cache")
+                .requires(cs -> cs.hasPermission(1))
+                .executes(CMD)
+                .then(Commands.literal("clear")
+                        .requires(cs -> cs.hasPermission(2))
+                        .executes(CmdCache::clear));
+    }
+
+    @Override
+    public int run(CommandContext<CommandSource> context) throws CommandSyntaxException {
+        ServerPlayerEntity player = context.getSource().getPlayerOrException();
+        if (player != null) {
+            CacheManager manager = CacheManager.MANAGER;
+            player.sendMessage(new StringTextComponent(TextFormatting.GOLD + "Memory: " + TextFormatting.WHITE + toKb(manager.getTotalWeight())
+                    + " of " + toKb(manager.getBudget())), Util.NIL_UUID);
+            for (ManagedCache cache : manager.getCaches()) {
+                CacheStats stats = cache.getStats();
+                player.sendMessage(new StringTextComponent(TextFormatting.GOLD + cache.getName() + ": " + TextFormatting.WHITE
+                        + cache.size() + " entries, " + toKb(cache.getWeight())
+                        + ", hit rate " + String.format("%.1f%%", stats.getHitRate() * 100)
+                        + ", evicted " + stats.getEvictions() + ", rejected " + stats.getRejections()), Util.NIL_UUID);
+            }
+        }
+        return 0;
+    }
+
+    private static int clear(CommandContext<CommandSource> context) throws CommandSyntaxException {
+        ServerPlayerEntity player = context.getSource().getPlayerOrException();
+        if (player != null) {
+            int count = CacheManager.MANAGER.clear(null);
+            player.sendMessage(new StringTextComponent(TextFormatting.GOLD + "Cleared " + count + " caches"), Util.NIL_UUID);
+        }
+        return 0;
+    }
+
+    private static String toKb(long bytes) {
+        return (bytes / 1024) + " kB";
+    }
+}
@@ -0,0 +1,62 @@
+package mcjty.fxcontrol.commands;
+
+import com.mojang.brigadier.Command;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import mcjty.fxcontrol.RulesManager;
+import mcjty.tools.rules.RuleBase;
+import mcjty.tools.rules.TokenBucket;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraft.util.Util;
+import net.minecraft.util.text.StringTextComponent;
+import net.minecraft.util.text.TextFormatting;
+
+import java.util.List;
+
+public class CmdRateLimits implements Command<CommandSource> {
+
+    private static final CmdRateLimits CMD = new CmdRateLimits();
+
+    public static ArgumentBuilder<CommandSource, ?> register(CommandDispatcher<CommandSource> dispatcher) {
+        return Commands.literal("ratelimits")
+                .requires(cs -> cs.hasPermission(1))
+                .executes(CMD);
+    }
+
+    @Override
+    public int run(CommandContext<CommandSource> context) throws CommandSyntaxException {
+        ServerPlayerEntity player = context.getSource().getPlayerOrException();
+        if (player != null) {
+            int count = 0;
+            count += dump(player, "effects.json", RulesManager.effectRules);
+            count += dump(player, "breakevents.json", RulesManager.harvestRules);
+            count += dump(player, "placeevents.json", RulesManager.placeRules);
+            count += dump(player, "rightclicks.json", RulesManager.rightclickRules);
+            count += dump(player, "leftclicks.json", RulesManager.leftclickRules);
+            if (count == 0) {
+                player.sendMessage(new StringTextComponent("No rules with a rate limit"), Util.NIL_UUID);
+            }
+        }
+        return 0;
+    }
+
+    private static int dump(ServerPlayerEntity player, String file, List<? extends RuleBase<?>> rules) {
+        int count = 0;
+        int i = 0;
+        for (RuleBase<?> rule : rules) {
+            TokenBucket rateLimit = rule.getRateLimit();
+            if (rateLimit != null) {
+                player.sendMessage(new StringTextComponent(TextFormatting.GOLD + file + " rule " + i + ": "
+                        + TextFormatting.WHITE + "allowed " + rateLimit.getAllowed()
+                        + ", throttled " + rateLimit.getThrottled()), Util.NIL_UUID);
+                count++;
+            }
+            i++;
+        }
+        return count;
+    }
+}
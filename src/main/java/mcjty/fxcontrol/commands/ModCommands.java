@@ -13,6 +13,9 @@ public class ModCommands {
                 Commands.literal(FxControl.MODID)
                         .then(CmdDebug.register(dispatcher))
                         .then(CmdReload.register(dispatcher))
+                        .then(CmdRateLimits.register(dispatcher))
+                        .then(CmdBudget.register(dispatcher))
+                        .then(CmdCache.register(dispatcher))
         );
 
         dispatcher.register(Commands.literal("fctrl").redirect(commands));
@@ -1,11 +1,57 @@
 package mcjty.fxcontrol.compat;
 
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import mcjty.tools.rules.PlayerSlots;
 import net.darkhax.gamestages.GameStageHelper;
 import net.darkhax.gamestages.data.IStageData;
+import net.darkhax.gamestages.event.GameStageEvent;
 import net.minecraft.entity.player.PlayerEntity;
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+
+import java.util.Arrays;
 
 public class GameStageSupport {
 
+    // Stage names used by rules are interned to small ids. Every player has a bitset with
+    // the stages (that have an id) of that player
+    private static final Object2IntOpenHashMap<String> STAGE_IDS = new Object2IntOpenHashMap<>();
+    private static final long[] NONE = new long[0];
+    private static final PlayerSlots.Table<long[]> STAGES = new PlayerSlots.Table<>(GameStageSupport::computeStages);
+
+    static {
+        STAGE_IDS.defaultReturnValue(-1);
+    }
+
+    public static void register() {
+        MinecraftForge.EVENT_BUS.addListener((GameStageEvent.Added event) -> setStage(event.getPlayer(), event.getStageName(), true));
+        MinecraftForge.EVENT_BUS.addListener((GameStageEvent.Removed event) -> setStage(event.getPlayer(), event.getStageName(), false));
+        MinecraftForge.EVENT_BUS.addListener((GameStageEvent.Cleared event) -> invalidate(event.getPlayer()));
+        MinecraftForge.EVENT_BUS.addListener((PlayerEvent.PlayerLoggedInEvent event) -> invalidate(event.getPlayer()));
+    }
+
+    // Call this when a rule is loaded and not for every test
+    public static synchronized int getStageId(String stage) {
+        int id = STAGE_IDS.getInt(stage);
+        if (id == -1) {
+            id = STAGE_IDS.size();
+            STAGE_IDS.put(stage, id);
+            // Existing bitsets don't know about this stage yet
+            STAGES.clear();
+        }
+        return id;
+    }
+
+    public static boolean hasGameStage(PlayerEntity player, int stageId) {
+        if (player != null) {
+            long[] stages = getStages(player);
+            int word = stageId >> 6;
+            return word < stages.length && (stages[word] & (1L << stageId)) != 0;
+        } else {
+            return false;
+        }
+    }
+
     public static boolean hasGameStage(PlayerEntity player, String stage) {
         if (player != null) {
             IStageData stageData = GameStageHelper.getPlayerData(player);
@@ -19,13 +65,67 @@ public class GameStageSupport {
         if (player != null) {
             IStageData stageData = GameStageHelper.getPlayerData(player);
             stageData.addStage(stage);
+            setStage(player, stage, true);
         }
     }
 
     public static void removeGameStage(PlayerEntity player, String stage) {
         if (player != null) {
             IStageData stageData = GameStageHelper.getPlayerData(player);
-            stageData.addStage(stage);
+            stageData.removeStage(stage);
+            setStage(player, stage, false);
+        }
+    }
+
+    private static long[] getStages(PlayerEntity player) {
+        return STAGES.get(player);
+    }
+
+    private static long[] computeStages(PlayerEntity player) {
+        IStageData stageData = GameStageHelper.getPlayerData(player);
+        if (stageData == null) {
+            return NONE;
+        }
+        long[] stages = NONE;
+        for (String stage : stageData.getStages()) {
+            int id = STAGE_IDS.getInt(stage);
+            if (id != -1) {
+                stages = setBit(stages, id, true);
+            }
+        }
+        return stages;
+    }
+
+    private static void setStage(PlayerEntity player, String stage, boolean value) {
+        int id = STAGE_IDS.getInt(stage);
+        if (player == null || id == -1) {
+            return;
+        }
+        long[] stages = getStages(player);
+        STAGES.set(player, setBit(stages, id, value));
+    }
+
+    private static long[] setBit(long[] stages, int id, boolean value) {
+        int word = id >> 6;
+        if (word >= stages.length) {
+            if (!value) {
+                return stages;
+            }
+            stages = Arrays.copyOf(stages, word + 1);
+        } else if (stages == NONE) {
+            stages = stages.clone();
+        }
+        if (value) {
+            stages[word] |= 1L << id;
+        } else {
+            stages[word] &= ~(1L << id);
+        }
+        return stages;
+    }
+
+    private static void invalidate(PlayerEntity player) {
+        if (player != null) {
+            STAGES.set(player, null);
         }
     }
 }
@@ -5,6 +5,7 @@ import mcjty.lostcities.api.ILostChunkInfo;
 import mcjty.lostcities.api.ILostCities;
 import mcjty.lostcities.api.ILostCityInformation;
 import mcjty.tools.rules.IEventQuery;
+import mcjty.tools.rules.IModRuleCompatibilityLayer;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.IServerWorld;
 import net.minecraft.world.IWorld;
@@ -34,8 +35,7 @@ public class LostCitySupport {
         FxControl.setup.getLogger().info("Enabling support for Lost Cities");
     }
 
-    private static <T> World getWorld(IEventQuery<T> query, T event) {
-        IWorld world = query.getWorld(event);
+    private static World getWorld(IWorld world) {
         if (world.isClientSide()) {
             return null;
         }
@@ -52,59 +52,51 @@ public class LostCitySupport {
 
 
     public static <T> boolean isCity(IEventQuery<T> query, T event) {
-        World w = getWorld(query, event);
-        if (w == null) {
-            return false;   // This test don't work client side
-        }
-        ILostCityInformation info = lostCities.getLostInfo(w);
-        if (info != null) {
-            BlockPos pos = query.getPos(event);
-            ILostChunkInfo chunkInfo = info.getChunkInfo(pos.getX() >> 4, pos.getZ() >> 4);
-            return chunkInfo.isCity();
-        }
-        return false;
+        return hasFlag(query, event, IModRuleCompatibilityLayer.LOSTCITY_CITY);
     }
 
     public static <T> boolean isStreet(IEventQuery<T> query, T event) {
-        World w = getWorld(query, event);
-        if (w == null) {
-            return false;   // This test don't work client side
-        }
-        ILostCityInformation info = lostCities.getLostInfo(w);
-        if (info != null) {
-            BlockPos pos = query.getPos(event);
-            ILostChunkInfo chunkInfo = info.getChunkInfo(pos.getX() >> 4, pos.getZ() >> 4);
-            return chunkInfo.isCity() && chunkInfo.getBuildingType() == null;
-        }
-        return false;
+        return hasFlag(query, event, IModRuleCompatibilityLayer.LOSTCITY_STREET);
     }
 
     public static <T> boolean inSphere(IEventQuery<T> query, T event) {
-        World w = getWorld(query, event);
-        if (w == null) {
-            return false;   // This test don't work client side
-        }
-        ILostCityInformation info = lostCities.getLostInfo(w);
-        if (info != null) {
-            BlockPos pos = query.getPos(event);
-            ILostChunkInfo chunkInfo = info.getChunkInfo(pos.getX() >> 4, pos.getZ() >> 4);
-            return chunkInfo.getSphere() != null;
-        }
-        return false;
+        return hasFlag(query, event, IModRuleCompatibilityLayer.LOSTCITY_SPHERE);
     }
 
     public static <T> boolean isBuilding(IEventQuery<T> query, T event) {
-        World w = getWorld(query, event);
+        return hasFlag(query, event, IModRuleCompatibilityLayer.LOSTCITY_BUILDING);
+    }
+
+    private static <T> boolean hasFlag(IEventQuery<T> query, T event, byte flag) {
+        BlockPos pos = query.getPos(event);
+        return (getChunkFlags(query.getWorld(event), pos.getX() >> 4, pos.getZ() >> 4) & flag) != 0;
+    }
+
+    // Lost City flags (see IModRuleCompatibilityLayer) of a chunk. This is not cached here. The
+    // flags of loaded chunks are remembered in the chunk summary (see ChunkSummary)
+    public static byte getChunkFlags(IWorld world, int chunkX, int chunkZ) {
+        World w = getWorld(world);
         if (w == null) {
-            return false;   // This test don't work client side
+            return 0;   // This test don't work client side
         }
+        return computeChunkFlags(w, chunkX, chunkZ);
+    }
+
+    private static byte computeChunkFlags(World w, int chunkX, int chunkZ) {
         ILostCityInformation info = lostCities.getLostInfo(w);
-        if (info != null) {
-            BlockPos pos = query.getPos(event);
-            ILostChunkInfo chunkInfo = info.getChunkInfo(pos.getX() >> 4, pos.getZ() >> 4);
-            return chunkInfo.isCity() && chunkInfo.getBuildingType() != null;
+        if (info == null) {
+            return 0;
+        }
+        ILostChunkInfo chunkInfo = info.getChunkInfo(chunkX, chunkZ);
+        byte flags = 0;
+        if (chunkInfo.isCity()) {
+            flags |= chunkInfo.getBuildingType() == null ? IModRuleCompatibilityLayer.LOSTCITY_STREET : IModRuleCompatibilityLayer.LOSTCITY_BUILDING;
+            flags |= IModRuleCompatibilityLayer.LOSTCITY_CITY;
+        }
+        if (chunkInfo.getSphere() != null) {
+            flags |= IModRuleCompatibilityLayer.LOSTCITY_SPHERE;
         }
-        return false;
+        return flags;
     }
 
     public static class GetLostCities implements Function<ILostCities, Void> {
@@ -68,6 +68,16 @@ public class ModRuleCompatibilityLayer implements IModRuleCompatibilityLayer {
         return GameStageSupport.hasGameStage(player, stage);
     }
 
+    @Override
+    public int getGameStageId(String stage) {
+        return GameStageSupport.getStageId(stage);
+    }
+
+    @Override
+    public boolean hasGameStage(PlayerEntity player, int stageId) {
+        return GameStageSupport.hasGameStage(player, stageId);
+    }
+
     @Override
     public void addGameStage(PlayerEntity player, String stage) {
         GameStageSupport.addGameStage(player, stage);
@@ -103,6 +113,11 @@ public class ModRuleCompatibilityLayer implements IModRuleCompatibilityLayer {
         return LostCitySupport.isBuilding(query, event);
     }
 
+    @Override
+    public byte getLostCityFlags(IWorld world, int chunkX, int chunkZ) {
+        return LostCitySupport.getChunkFlags(world, chunkX, chunkZ);
+    }
+
     @Override
     public boolean hasSereneSeasons() {
         return ModSetup.sereneSeasons;
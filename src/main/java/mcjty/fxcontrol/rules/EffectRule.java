@@ -128,6 +128,11 @@ public class EffectRule extends RuleBase<RuleBase.EventGetter> {
                 .attribute(Attribute.createMulti(DIMENSION))
                 .attribute(Attribute.createMulti(DIMENSION_MOD))
 
+                .attribute(Attribute.create(COOLDOWN))
+                .attribute(Attribute.create(ONCE))
+                .attribute(Attribute.create(RATELIMIT))
+                .attribute(Attribute.create(RATELIMITMODE))
+
                 .attribute(Attribute.create(ACTION_COMMAND))
                 .attribute(Attribute.create(ACTION_ADDSTAGE))
                 .attribute(Attribute.create(ACTION_REMOVESTAGE))
@@ -162,10 +167,16 @@ public class EffectRule extends RuleBase<RuleBase.EventGetter> {
     }
 
     public boolean match(TickEvent.PlayerTickEvent event) {
-        return ruleEvaluator.match(event, EVENT_QUERY);
+        if (isOnCooldown(EVENT_QUERY.getPlayer(event))) {
+            return false;
+        }
+        return ruleEvaluator.match(event, EVENT_QUERY) && passRateLimit();
     }
 
     public void action(TickEvent.PlayerTickEvent event) {
+        if (!passActionRateLimit()) {
+            return;
+        }
         EventGetter getter = new EventGetter() {
             @Override
             public LivingEntity getEntityLiving() {
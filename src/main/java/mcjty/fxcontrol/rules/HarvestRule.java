@@ -131,6 +131,11 @@ public class HarvestRule extends RuleBase<RuleBase.EventGetter> {
                 .attribute(Attribute.createMulti(DIMENSION))
                 .attribute(Attribute.createMulti(DIMENSION_MOD))
 
+                .attribute(Attribute.create(COOLDOWN))
+                .attribute(Attribute.create(ONCE))
+                .attribute(Attribute.create(RATELIMIT))
+                .attribute(Attribute.create(RATELIMITMODE))
+
                 .attribute(Attribute.create(ACTION_COMMAND))
                 .attribute(Attribute.create(ACTION_ADDSTAGE))
                 .attribute(Attribute.create(ACTION_REMOVESTAGE))
@@ -179,10 +184,16 @@ public class HarvestRule extends RuleBase<RuleBase.EventGetter> {
     }
 
     public boolean match(BlockEvent.BreakEvent event) {
-        return ruleEvaluator.match(event, EVENT_QUERY);
+        if (isOnCooldown(EVENT_QUERY.getPlayer(event))) {
+            return false;
+        }
+        return ruleEvaluator.match(event, EVENT_QUERY) && passRateLimit();
     }
 
     public void action(BlockEvent.BreakEvent event) {
+        if (!passActionRateLimit()) {
+            return;
+        }
         EventGetter getter = new EventGetter() {
             @Override
             public LivingEntity getEntityLiving() {
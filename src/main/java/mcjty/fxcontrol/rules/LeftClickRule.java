@@ -132,6 +132,11 @@ public class LeftClickRule extends RuleBase<RuleBase.EventGetter> {
                 .attribute(Attribute.createMulti(DIMENSION))
                 .attribute(Attribute.createMulti(DIMENSION_MOD))
 
+                .attribute(Attribute.create(COOLDOWN))
+                .attribute(Attribute.create(ONCE))
+                .attribute(Attribute.create(RATELIMIT))
+                .attribute(Attribute.create(RATELIMITMODE))
+
                 .attribute(Attribute.create(ACTION_COMMAND))
                 .attribute(Attribute.create(ACTION_ADDSTAGE))
                 .attribute(Attribute.create(ACTION_REMOVESTAGE))
@@ -180,10 +185,16 @@ public class LeftClickRule extends RuleBase<RuleBase.EventGetter> {
     }
 
     public boolean match(PlayerInteractEvent.LeftClickBlock event) {
-        return ruleEvaluator.match(event, EVENT_QUERY);
+        if (isOnCooldown(EVENT_QUERY.getPlayer(event))) {
+            return false;
+        }
+        return ruleEvaluator.match(event, EVENT_QUERY) && passRateLimit();
     }
 
     public void action(PlayerInteractEvent.LeftClickBlock event) {
+        if (!passActionRateLimit()) {
+            return;
+        }
         EventGetter getter = new EventGetter() {
             @Override
             public LivingEntity getEntityLiving() {
@@ -0,0 +1,56 @@
+package mcjty.fxcontrol.setup;
+
+import net.minecraftforge.common.ForgeConfigSpec;
+import net.minecraftforge.fml.ModLoadingContext;
+import net.minecraftforge.fml.config.ModConfig;
+
+public class Config {
+
+    private static final ForgeConfigSpec.Builder COMMON_BUILDER = new ForgeConfigSpec.Builder();
+    public static ForgeConfigSpec COMMON_CONFIG;
+
+    public static ForgeConfigSpec.IntValue ACTION_BUDGET;
+    public static ForgeConfigSpec.IntValue ACTION_QUEUE_SIZE;
+
+    public static ForgeConfigSpec.IntValue BLOCK_PROBE_TTL;
+    public static ForgeConfigSpec.BooleanValue FAST_SEESKY;
+    public static ForgeConfigSpec.IntValue CACHE_MEMORY_BUDGET;
+    public static ForgeConfigSpec.IntValue WARMUP_RADIUS;
+    public static ForgeConfigSpec.IntValue WARMUP_CHUNKS_PER_TICK;
+    public static ForgeConfigSpec.IntValue PREFETCH_DISTANCE;
+
+    public static void register() {
+        COMMON_BUILDER.comment("Action budget").push("budget");
+        ACTION_BUDGET = COMMON_BUILDER
+                .comment("Maximum cost of expensive rule actions (setblock, explosion, drop, give, potion) that can be executed server wide in a single tick. Actions over this budget are delayed to later ticks")
+                .defineInRange("actionBudget", 200, 1, 1000000);
+        ACTION_QUEUE_SIZE = COMMON_BUILDER
+                .comment("Maximum number of delayed actions. When the queue is full new actions are dropped")
+                .defineInRange("actionQueueSize", 10000, 0, 1000000);
+        COMMON_BUILDER.pop();
+
+        COMMON_BUILDER.comment("Caches").push("cache");
+        BLOCK_PROBE_TTL = COMMON_BUILDER
+                .comment("Number of ticks that the energy and inventory contents of a block are remembered for the 'energy' and 'contains' block tests. 0 disables this cache")
+                .defineInRange("blockProbeTtl", 20, 0, 1200);
+        FAST_SEESKY = COMMON_BUILDER
+                .comment("If true the 'seesky' test only looks at the height of the highest motion blocking block (including water and leaves). This is much faster but transparent blocks like glass also block the sky and the special handling below sea level is gone")
+                .define("fastSeeSky", false);
+        CACHE_MEMORY_BUDGET = COMMON_BUILDER
+                .comment("Approximate amount of memory (in MB) that all FxControl caches together may use. When this is exceeded the least useful entries of the largest caches are evicted")
+                .defineInRange("cacheMemoryBudget", 64, 1, 4096);
+        WARMUP_RADIUS = COMMON_BUILDER
+                .comment("Radius (in chunks) around spawn (when the server starts) and around players (when they log in or change dimension) for which the chunk information used by rules is computed in advance. 0 disables this")
+                .defineInRange("warmupRadius", 4, 0, 16);
+        WARMUP_CHUNKS_PER_TICK = COMMON_BUILDER
+                .comment("Maximum number of chunks that are prepared per tick by the warm-up")
+                .defineInRange("warmupChunksPerTick", 32, 1, 1024);
+        PREFETCH_DISTANCE = COMMON_BUILDER
+                .comment("Number of chunks ahead of fast moving players (elytra, minecarts, ...) for which the chunk information used by rules is prepared in advance. 0 disables this")
+                .defineInRange("prefetchDistance", 4, 0, 16);
+        COMMON_BUILDER.pop();
+
+        COMMON_CONFIG = COMMON_BUILDER.build();
+        ModLoadingContext.get().registerConfig(ModConfig.Type.COMMON, COMMON_CONFIG);
+    }
+}
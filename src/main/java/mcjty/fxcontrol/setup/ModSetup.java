@@ -4,7 +4,9 @@ import mcjty.fxcontrol.ForgeEventHandlers;
 import mcjty.fxcontrol.FxControl;
 import mcjty.fxcontrol.RulesManager;
 import mcjty.fxcontrol.compat.EnigmaSupport;
+import mcjty.fxcontrol.compat.GameStageSupport;
 import mcjty.fxcontrol.compat.LostCitySupport;
+import mcjty.tools.cache.ChunkSummary;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.fml.ModList;
 import net.minecraftforge.fml.loading.FMLPaths;
@@ -25,6 +27,7 @@ public class ModSetup {
     public void init() {
         logger = LogManager.getLogger(FxControl.MODID);
         setupModCompat();
+        ChunkSummary.register();
 
         MinecraftForge.EVENT_BUS.register(new ForgeEventHandlers());
         RulesManager.setRulePath(FMLPaths.CONFIGDIR.get());
@@ -47,6 +50,7 @@ public class ModSetup {
             FxControl.setup.getLogger().log(Level.INFO, "Enabling support for Lost Cities");
         }
         if (ModSetup.gamestages) {
+            GameStageSupport.register();
             FxControl.setup.getLogger().log(Level.INFO, "Enabling support for Game Stages");
         }
         if (ModSetup.sereneSeasons) {
@@ -0,0 +1,245 @@
+package mcjty.tools.cache;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import mcjty.tools.rules.ItemMatcher;
+import mcjty.tools.varia.Tools;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.Direction;
+import net.minecraft.util.RegistryKey;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.World;
+import net.minecraftforge.energy.CapabilityEnergy;
+import net.minecraftforge.energy.IEnergyStorage;
+import net.minecraftforge.items.CapabilityItemHandler;
+import net.minecraftforge.items.IItemHandler;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the energy level and a summary of the inventory (the slots for every item)
+ * of blocks that are tested by 'energy' and 'contains' block tests. Entries are valid for
+ * a short time (ttl in ticks) and are forgotten when the block changes
+ *
+ * The inventory summary is only used to find the slots that may match. The stacks in
+ * these slots are always fetched from the inventory itself
+ *
+ * The least recently used positions are forgotten first. This cache is only used from the
+ * server thread but the CacheManager can ask it to evict entries from any thread
+ */
+public class BlockProbeCache implements ManagedCache {
+
+    public static final BlockProbeCache CACHE = new BlockProbeCache();
+
+    // Maximum number of positions remembered per dimension
+    private static final int MAX_ENTRIES = 4096;
+    // Index for the 'null' side
+    private static final int NOSIDE = 6;
+    // Estimated size of an entry without inventory summaries
+    private static final long ENTRY_WEIGHT = 240;
+
+    private int ttl = 20;
+    private final Map<RegistryKey<World>, Long2ObjectLinkedOpenHashMap<Entry>> cache = new HashMap<>();
+    private final CacheStats stats = new CacheStats();
+    private volatile long weight = 0;
+
+    public BlockProbeCache() {
+        CacheManager.MANAGER.register(this);
+    }
+
+    public void setTtl(int ttl) {
+        this.ttl = ttl;
+    }
+
+    public synchronized void clean() {
+        cache.clear();
+        weight = 0;
+    }
+
+    @Override
+    public String getName() {
+        return "block probes";
+    }
+
+    @Override
+    public synchronized int size() {
+        int size = 0;
+        for (Long2ObjectLinkedOpenHashMap<Entry> map : cache.values()) {
+            size += map.size();
+        }
+        return size;
+    }
+
+    @Override
+    public long getWeight() {
+        return weight;
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void clear() {
+        clean();
+    }
+
+    @Override
+    public synchronized void evict(long toFree) {
+        long freed = 0;
+        boolean progress = true;
+        while (freed < toFree && progress) {
+            progress = false;
+            for (Long2ObjectLinkedOpenHashMap<Entry> map : cache.values()) {
+                if (!map.isEmpty()) {
+                    freed += removed(map.removeFirst());
+                    stats.eviction();
+                    progress = true;
+                }
+            }
+        }
+    }
+
+    public synchronized void invalidate(IWorld world, BlockPos pos) {
+        if (cache.isEmpty()) {
+            return;
+        }
+        Long2ObjectLinkedOpenHashMap<Entry> map = cache.get(Tools.getDimensionKey(world));
+        if (map != null) {
+            Entry entry = map.remove(pos.asLong());
+            if (entry != null) {
+                removed(entry);
+            }
+        }
+    }
+
+    public int getEnergy(IWorld world, BlockPos pos, @Nullable Direction side) {
+        if (ttl <= 0) {
+            return computeEnergy(world, pos, side);
+        }
+        long time = world.getLevelData().getGameTime();
+        synchronized (this) {
+            Entry entry = getEntry(world, pos);
+            int s = side == null ? NOSIDE : side.ordinal();
+            if (time - entry.energyTime[s] >= ttl) {
+                stats.miss();
+                entry.energy[s] = computeEnergy(world, pos, side);
+                entry.energyTime[s] = time;
+            } else {
+                stats.hit();
+            }
+            return entry.energy[s];
+        }
+    }
+
+    public boolean contains(IWorld world, BlockPos pos, @Nullable Direction side, ItemMatcher matcher) {
+        TileEntity tileEntity = world.getBlockEntity(pos);
+        if (tileEntity == null) {
+            return false;
+        }
+        IItemHandler handler = tileEntity.getCapability(CapabilityItemHandler.ITEM_HANDLER_CAPABILITY, side).orElse(null);
+        if (handler == null) {
+            return false;
+        }
+        if (ttl <= 0) {
+            return matcher.testInventory(handler, summarize(handler));
+        }
+        long time = world.getLevelData().getGameTime();
+        Reference2ObjectOpenHashMap<Item, IntArrayList> slots;
+        boolean grown = false;
+        synchronized (this) {
+            Entry entry = getEntry(world, pos);
+            int s = side == null ? NOSIDE : side.ordinal();
+            if (entry.slots[s] == null || time - entry.slotsTime[s] >= ttl) {
+                stats.miss();
+                long before = entry.weight;
+                entry.slots[s] = summarize(handler);
+                entry.slotsTime[s] = time;
+                entry.weight = entry.computeWeight();
+                weight += entry.weight - before;
+                grown = entry.weight > before;
+            } else {
+                stats.hit();
+            }
+            slots = entry.slots[s];
+        }
+        if (grown) {
+            CacheManager.MANAGER.checkBudget();
+        }
+        return matcher.testInventory(handler, slots);
+    }
+
+    private Entry getEntry(IWorld world, BlockPos pos) {
+        Long2ObjectLinkedOpenHashMap<Entry> map = cache.computeIfAbsent(Tools.getDimensionKey(world), k -> new Long2ObjectLinkedOpenHashMap<>());
+        long key = pos.asLong();
+        Entry entry = map.getAndMoveToLast(key);
+        if (entry == null) {
+            if (map.size() >= MAX_ENTRIES) {
+                removed(map.removeFirst());
+                stats.eviction();
+            }
+            entry = new Entry();
+            map.put(key, entry);
+            weight += entry.weight;
+        }
+        return entry;
+    }
+
+    private long removed(Entry entry) {
+        weight -= entry.weight;
+        return entry.weight;
+    }
+
+    private static int computeEnergy(IWorld world, BlockPos pos, @Nullable Direction side) {
+        TileEntity tileEntity = world.getBlockEntity(pos);
+        if (tileEntity != null) {
+            return tileEntity.getCapability(CapabilityEnergy.ENERGY, side).map(IEnergyStorage::getEnergyStored).orElse(0);
+        }
+        return 0;
+    }
+
+    private static Reference2ObjectOpenHashMap<Item, IntArrayList> summarize(IItemHandler handler) {
+        Reference2ObjectOpenHashMap<Item, IntArrayList> slots = new Reference2ObjectOpenHashMap<>();
+        for (int i = 0 ; i < handler.getSlots() ; i++) {
+            ItemStack stack = handler.getStackInSlot(i);
+            if (!stack.isEmpty()) {
+                slots.computeIfAbsent(stack.getItem(), item -> new IntArrayList()).add(i);
+            }
+        }
+        return slots;
+    }
+
+    private static class Entry {
+        private final long[] energyTime = new long[7];
+        private final int[] energy = new int[7];
+        private final long[] slotsTime = new long[7];
+        private final Reference2ObjectOpenHashMap<Item, IntArrayList>[] slots = new Reference2ObjectOpenHashMap[7];
+        private long weight = ENTRY_WEIGHT;
+
+        private Entry() {
+            // Energy is not known yet
+            Arrays.fill(energyTime, Long.MIN_VALUE / 2);
+        }
+
+        private long computeWeight() {
+            long w = ENTRY_WEIGHT;
+            for (Reference2ObjectOpenHashMap<Item, IntArrayList> summary : slots) {
+                if (summary != null) {
+                    w += 64;
+                    for (IntArrayList list : summary.values()) {
+                        w += 48 + list.size() * 4L;
+                    }
+                }
+            }
+            return w;
+        }
+    }
+}
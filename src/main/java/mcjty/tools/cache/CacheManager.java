@@ -0,0 +1,82 @@
+package mcjty.tools.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Knows all managed caches and keeps their combined weight below a global memory
+ * budget. When the budget is exceeded the heaviest caches are asked to evict entries first
+ */
+public class CacheManager {
+
+    public static final CacheManager MANAGER = new CacheManager();
+
+    private final List<ManagedCache> caches = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean shrinking = new AtomicBoolean(false);
+    private volatile long budget = 64L * 1024 * 1024;
+
+    public void register(ManagedCache cache) {
+        caches.add(cache);
+    }
+
+    public void unregister(ManagedCache cache) {
+        caches.remove(cache);
+    }
+
+    public List<ManagedCache> getCaches() {
+        return caches;
+    }
+
+    public void setBudget(long budget) {
+        this.budget = budget;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public long getTotalWeight() {
+        long total = 0;
+        for (ManagedCache cache : caches) {
+            total += cache.getWeight();
+        }
+        return total;
+    }
+
+    public void checkBudget() {
+        long excess = getTotalWeight() - budget;
+        if (excess <= 0 || !shrinking.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<ManagedCache> sorted = new ArrayList<>(caches);
+            sorted.sort(Comparator.comparingLong(ManagedCache::getWeight).reversed());
+            for (ManagedCache cache : sorted) {
+                long before = cache.getWeight();
+                cache.evict(Math.min(excess, before));
+                excess -= before - cache.getWeight();
+                if (excess <= 0) {
+                    break;
+                }
+            }
+        } finally {
+            shrinking.set(false);
+        }
+    }
+
+    // Clear all caches with this name (or all caches if name is null). Returns the number of cleared caches
+    public int clear(String name) {
+        int count = 0;
+        for (ManagedCache cache : caches) {
+            if (name == null || cache.getName().equals(name)) {
+                cache.clear();
+                cache.getStats().reset();
+                count++;
+            }
+        }
+        return count;
+    }
+}
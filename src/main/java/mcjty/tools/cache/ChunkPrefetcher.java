@@ -0,0 +1,96 @@
+package mcjty.tools.cache;
+
+import mcjty.tools.rules.PlayerSlots;
+import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.server.ServerWorld;
+
+/**
+ * Prefetch the chunk summaries (see ChunkSummary) of the chunks a fast moving player is
+ * about to enter. The velocity of every player is estimated from the position changes
+ * between ticks. Every time a fast player crosses a chunk border the chunks in front of the
+ * player (and the chunks next to that line) are given to the ChunkWarmer. The ChunkWarmer
+ * limits how many chunks are handled per tick and skips chunks that are not loaded
+ */
+public class ChunkPrefetcher {
+
+    // Minimum speed (in blocks per tick) before chunks are prefetched. Sprinting is about 0.28
+    private static final double MIN_SPEED = 0.3;
+    // Faster than this is a teleport and not movement
+    private static final double MAX_SPEED = 8;
+    // Weight of the newest sample in the smoothed velocity
+    private static final double SMOOTHING = 0.3;
+
+    private static final PlayerSlots.Table<Track> TRACKS = new PlayerSlots.Table<>(player -> new Track());
+
+    private static class Track {
+        private ServerWorld world = null;
+        private double x;
+        private double z;
+        private double vx = 0;
+        private double vz = 0;
+        private int chunkX;
+        private int chunkZ;
+    }
+
+    // Called every tick for every player on the server. 'distance' is the number of chunks to look ahead
+    public static void update(ServerPlayerEntity player, int distance) {
+        Track track = getTrack(player);
+        ServerWorld world = player.getLevel();
+        double x = player.getX();
+        double z = player.getZ();
+        int cx = MathHelper.floor(x) >> 4;
+        int cz = MathHelper.floor(z) >> 4;
+        if (track.world != world) {
+            // New player or teleported to another dimension
+            track.world = world;
+            track.vx = 0;
+            track.vz = 0;
+        } else {
+            double sx = x - track.x;
+            double sz = z - track.z;
+            if (Math.abs(sx) > MAX_SPEED || Math.abs(sz) > MAX_SPEED) {
+                // A teleport is not movement. Start again from standing still
+                track.vx = 0;
+                track.vz = 0;
+            } else {
+                track.vx += (sx - track.vx) * SMOOTHING;
+                track.vz += (sz - track.vz) * SMOOTHING;
+            }
+        }
+        track.x = x;
+        track.z = z;
+        if (cx == track.chunkX && cz == track.chunkZ) {
+            return;
+        }
+        track.chunkX = cx;
+        track.chunkZ = cz;
+        double speed = Math.sqrt(track.vx * track.vx + track.vz * track.vz);
+        if (distance <= 0 || speed < MIN_SPEED) {
+            return;
+        }
+        double dx = track.vx / speed;
+        double dz = track.vz / speed;
+        // Farthest chunks first because prefetched chunks are put in front of the queue
+        for (int i = distance ; i >= 1 ; i--) {
+            double px = x + dx * i * 16;
+            double pz = z + dz * i * 16;
+            // Also the chunks to the left and right of the path
+            for (int side = -1 ; side <= 1 ; side++) {
+                int pcx = MathHelper.floor(px - dz * side * 16) >> 4;
+                int pcz = MathHelper.floor(pz + dx * side * 16) >> 4;
+                if (!ChunkWarmer.WARMER.prefetch(world, pcx, pcz)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    public static void clean() {
+        TRACKS.clear();
+    }
+
+    private static Track getTrack(ServerPlayerEntity player) {
+        return TRACKS.get(player);
+    }
+}
@@ -0,0 +1,182 @@
+package mcjty.tools.cache;
+
+import mcjty.tools.rules.IModRuleCompatibilityLayer;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.INBT;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.biome.BiomeContainer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.CapabilityInject;
+import net.minecraftforge.common.capabilities.CapabilityManager;
+
+import javax.annotation.Nullable;
+
+/**
+ * Compact summary of the per chunk information that rules test: the structures in the chunk,
+ * the Lost Cities flags and the biome ids at quart resolution. This is attached as a
+ * capability to every server chunk. Every part is computed the first time it is needed and the
+ * structures and Lost Cities flags are saved with the chunk
+ *
+ * The structures and biome ids can also be computed ahead of time from a background thread
+ * (see ChunkWarmer). The Lost Cities flags are only computed on the server thread
+ */
+public class ChunkSummary {
+
+    @CapabilityInject(ChunkSummary.class)
+    public static Capability<ChunkSummary> CHUNK_SUMMARY = null;
+
+    private static final byte LOSTCITY_COMPUTED = (byte) 0x80;
+
+    private final Chunk chunk;
+
+    // Only structure masks that are valid for the current structure registry are published here
+    private volatile long[] structures = null;
+    private int structureHash = 0;
+    // Loaded with the chunk but not yet checked against the structure registry
+    private long[] savedStructures = null;
+    private int savedHash = 0;
+    private byte lostCityFlags = 0;
+    private volatile int[] biomeIds = null;
+
+    public ChunkSummary(Chunk chunk) {
+        this.chunk = chunk;
+    }
+
+    public static void register() {
+        CapabilityManager.INSTANCE.register(ChunkSummary.class, new Capability.IStorage<ChunkSummary>() {
+            @Override
+            public CompoundNBT writeNBT(Capability<ChunkSummary> capability, ChunkSummary instance, Direction side) {
+                return instance.serializeNBT();
+            }
+
+            @Override
+            public void readNBT(Capability<ChunkSummary> capability, ChunkSummary instance, Direction side, INBT nbt) {
+                instance.deserializeNBT((CompoundNBT) nbt);
+            }
+        }, () -> null);
+    }
+
+    // Get the summary of the chunk at this position. Returns null if the chunk is not loaded or if this is not a server world
+    @Nullable
+    public static ChunkSummary get(IWorld world, BlockPos pos) {
+        if (CHUNK_SUMMARY == null || !(world instanceof ServerWorld)) {
+            return null;
+        }
+        // getChunkNow() returns null when not called from the server thread
+        Chunk c = ((ServerWorld) world).getChunkSource().getChunkNow(pos.getX() >> 4, pos.getZ() >> 4);
+        if (c == null) {
+            return null;
+        }
+        return c.getCapability(CHUNK_SUMMARY).orElse(null);
+    }
+
+    public long[] getStructures() {
+        long[] s = structures;
+        if (s != null) {
+            return s;
+        }
+        return computeStructures();
+    }
+
+    private synchronized long[] computeStructures() {
+        if (structures == null) {
+            int hash = StructureCache.CACHE.getRegistryHash();
+            long[] mask = null;
+            // Saved bitmasks are only valid with the same structure registry
+            if (savedStructures != null && savedHash == hash) {
+                mask = savedStructures;
+            }
+            if (mask == null) {
+                mask = StructureCache.CACHE.computeMask(chunk);
+            }
+            structureHash = hash;
+            structures = mask;
+            savedStructures = null;
+        }
+        return structures;
+    }
+
+    public boolean hasLostCityFlag(IModRuleCompatibilityLayer compatibility, byte flag) {
+        return (getLostCityFlags(compatibility) & flag) != 0;
+    }
+
+    public boolean hasLostCityFlags() {
+        return (lostCityFlags & LOSTCITY_COMPUTED) != 0;
+    }
+
+    // Must be called on the server thread
+    public byte getLostCityFlags(IModRuleCompatibilityLayer compatibility) {
+        if ((lostCityFlags & LOSTCITY_COMPUTED) == 0) {
+            lostCityFlags = (byte) (compatibility.getLostCityFlags(chunk.getLevel(), chunk.getPos().x, chunk.getPos().z) | LOSTCITY_COMPUTED);
+        }
+        return lostCityFlags;
+    }
+
+    // Returns the raw id of the biome at this position (at quart resolution) or -1 if not known
+    public int getBiomeId(BlockPos pos) {
+        int[] ids = biomeIds;
+        if (ids == null) {
+            ids = computeBiomeIds();
+            if (ids == null) {
+                return -1;
+            }
+        }
+        // Same layout as BiomeContainer
+        int qx = (pos.getX() >> 2) & 3;
+        int qy = MathHelper.clamp(pos.getY() >> 2, 0, 63);
+        int qz = (pos.getZ() >> 2) & 3;
+        return ids[qy << 4 | qz << 2 | qx];
+    }
+
+    @Nullable
+    private synchronized int[] computeBiomeIds() {
+        if (biomeIds == null) {
+            BiomeContainer container = chunk.getBiomes();
+            if (container != null) {
+                biomeIds = container.writeBiomes();
+            }
+        }
+        return biomeIds;
+    }
+
+    // Compute everything that can safely be computed outside the server thread
+    public void warm() {
+        getStructures();
+        computeBiomeIds();
+    }
+
+    public boolean isWarm() {
+        return structures != null && biomeIds != null;
+    }
+
+    public synchronized CompoundNBT serializeNBT() {
+        CompoundNBT tag = new CompoundNBT();
+        if (structures != null) {
+            tag.putInt("hash", structureHash);
+            tag.putLongArray("structures", structures);
+        } else if (savedStructures != null) {
+            tag.putInt("hash", savedHash);
+            tag.putLongArray("structures", savedStructures);
+        }
+        if ((lostCityFlags & LOSTCITY_COMPUTED) != 0) {
+            tag.putByte("lc", lostCityFlags);
+        }
+        return tag;
+    }
+
+    public synchronized void deserializeNBT(CompoundNBT tag) {
+        if (tag.contains("structures")) {
+            savedHash = tag.getInt("hash");
+            savedStructures = tag.getLongArray("structures");
+            structures = null;
+        }
+        if (tag.contains("lc")) {
+            lostCityFlags = tag.getByte("lc");
+        }
+    }
+}
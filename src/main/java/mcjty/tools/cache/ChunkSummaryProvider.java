@@ -0,0 +1,41 @@
+package mcjty.tools.cache;
+
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.util.Direction;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.ICapabilitySerializable;
+import net.minecraftforge.common.util.LazyOptional;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+public class ChunkSummaryProvider implements ICapabilitySerializable<CompoundNBT> {
+
+    private final ChunkSummary summary;
+    private final LazyOptional<ChunkSummary> optional;
+
+    public ChunkSummaryProvider(Chunk chunk) {
+        summary = new ChunkSummary(chunk);
+        optional = LazyOptional.of(() -> summary);
+    }
+
+    @Nonnull
+    @Override
+    public <T> LazyOptional<T> getCapability(@Nonnull Capability<T> cap, @Nullable Direction side) {
+        if (cap == ChunkSummary.CHUNK_SUMMARY) {
+            return optional.cast();
+        }
+        return LazyOptional.empty();
+    }
+
+    @Override
+    public CompoundNBT serializeNBT() {
+        return summary.serializeNBT();
+    }
+
+    @Override
+    public void deserializeNBT(CompoundNBT nbt) {
+        summary.deserializeNBT(nbt);
+    }
+}
@@ -0,0 +1,189 @@
+package mcjty.tools.cache;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import mcjty.fxcontrol.FxControl;
+import mcjty.tools.rules.IModRuleCompatibilityLayer;
+import net.minecraft.util.RegistryKey;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.server.ServerWorld;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fill the chunk summaries (see ChunkSummary) of loaded chunks before rules need them so
+ * that rule tests don't have to compute them on the server thread. Chunks are queued from
+ * the server thread and every tick a limited number of them is taken from the queue.
+ * Structures and biomes are computed on a background thread. Lost Cities flags are computed
+ * immediately because Lost Cities can only be queried from the server thread
+ *
+ * Chunks that are not loaded when their turn comes are skipped
+ */
+public class ChunkWarmer {
+
+    public static final ChunkWarmer WARMER = new ChunkWarmer();
+
+    private static final int MAX_QUEUED = 16384;
+    private static final int MAX_RUNNING = 256;
+    // Maximum number of requests taken from the queue per tick (including chunks that need no work)
+    private static final int MAX_POLLED_FACTOR = 8;
+
+    private final Deque<Request> queue = new ArrayDeque<>();
+    private final Map<RegistryKey<World>, LongOpenHashSet> queued = new HashMap<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong warmed = new AtomicLong();
+    private ExecutorService executor = null;
+
+    private int chunksPerTick = 32;
+    private long tick = 0;
+
+    public void setChunksPerTick(int chunksPerTick) {
+        this.chunksPerTick = chunksPerTick;
+    }
+
+    // Queue all chunks in a square around this chunk (nearest chunks first). They are warmed up after 'delay' ticks
+    public void warmArea(ServerWorld world, int cx, int cz, int radius, int delay) {
+        for (int r = 0 ; r <= radius ; r++) {
+            for (int dx = -r ; dx <= r ; dx++) {
+                for (int dz = -r ; dz <= r ; dz++) {
+                    if (Math.abs(dx) == r || Math.abs(dz) == r) {
+                        if (!warm(world, cx + dx, cz + dz, delay)) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Queue a single chunk. Returns false if the queue is full
+    public boolean warm(ServerWorld world, int cx, int cz, int delay) {
+        return add(world, cx, cz, delay, false);
+    }
+
+    // Queue a single chunk in front of all other chunks so that it is handled in the next tick
+    public boolean prefetch(ServerWorld world, int cx, int cz) {
+        return add(world, cx, cz, 0, true);
+    }
+
+    private boolean add(ServerWorld world, int cx, int cz, int delay, boolean first) {
+        if (queue.size() >= MAX_QUEUED) {
+            return false;
+        }
+        long cplong = ChunkPos.asLong(cx, cz);
+        if (queued.computeIfAbsent(world.dimension(), k -> new LongOpenHashSet()).add(cplong)) {
+            Request request = new Request(world, cplong, tick + delay);
+            if (first) {
+                queue.addFirst(request);
+            } else {
+                queue.addLast(request);
+            }
+        }
+        return true;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getWarmed() {
+        return warmed.get();
+    }
+
+    // Called on the server thread every tick
+    public void tick(IModRuleCompatibilityLayer compatibility) {
+        tick++;
+        int count = 0;
+        int polled = 0;
+        int maxPolled = chunksPerTick * MAX_POLLED_FACTOR;
+        while (count < chunksPerTick && polled < maxPolled && !queue.isEmpty() && queue.peekFirst().due <= tick && running.get() < MAX_RUNNING) {
+            Request request = queue.removeFirst();
+            polled++;
+            queued.get(request.world.dimension()).remove(request.cplong);
+            Chunk chunk = request.world.getChunkSource().getChunkNow(ChunkPos.getX(request.cplong), ChunkPos.getZ(request.cplong));
+            if (chunk == null) {
+                continue;
+            }
+            ChunkSummary summary = chunk.getCapability(ChunkSummary.CHUNK_SUMMARY).orElse(null);
+            if (summary == null) {
+                continue;
+            }
+            boolean work = false;
+            if (compatibility.hasLostCities() && !summary.hasLostCityFlags()) {
+                summary.getLostCityFlags(compatibility);
+                work = true;
+            }
+            boolean warm = summary.isWarm();
+            if (work || !warm) {
+                // Every chunk that needs work (on this thread or the background thread) counts for the limit
+                count++;
+            }
+            if (!warm) {
+                running.incrementAndGet();
+                getExecutor().execute(() -> {
+                    try {
+                        summary.warm();
+                        warmed.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        // Not fatal. The summary will be computed when a rule needs it
+                        FxControl.setup.getLogger().debug("Error warming up chunk summary", e);
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                });
+            }
+        }
+    }
+
+    private ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "FxControl cache warmup");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    public void clean() {
+        queue.clear();
+        queued.clear();
+        tick = 0;
+        if (executor != null) {
+            // Make sure no task is still working on chunks of the stopped server
+            executor.shutdownNow();
+            try {
+                if (!executor.awaitTermination(2, TimeUnit.SECONDS)) {
+                    FxControl.setup.getLogger().warn("Cache warmup thread didn't stop in time");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+        running.set(0);
+    }
+
+    private static class Request {
+        private final ServerWorld world;
+        private final long cplong;
+        private final long due;
+
+        private Request(ServerWorld world, long cplong, long due) {
+            this.world = world;
+            this.cplong = cplong;
+            this.due = due;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package mcjty.tools.cache;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+/**
+ * Approximate access frequency of keys (a count-min sketch with four rows of small
+ * saturating counters). All counters are halved after a number of increments so that
+ * old popularity fades. Used by LongCache for TinyLFU admission
+ *
+ * Updates are not atomic. Under contention an increment can get lost, which is fine
+ * for an estimate
+ */
+public class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final long[] SEEDS = { 0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L };
+
+    private final byte[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions = 0;
+
+    public FrequencySketch(int expectedSize) {
+        int width = HashCommon.nextPowerOfTwo(Math.max(16, expectedSize));
+        table = new byte[DEPTH * width];
+        mask = width - 1;
+        sampleSize = 10 * width;
+    }
+
+    public void increment(long key) {
+        boolean added = false;
+        for (int i = 0 ; i < DEPTH ; i++) {
+            int index = index(key, i);
+            if (table[index] < MAX_COUNT) {
+                table[index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    public int frequency(long key) {
+        int frequency = MAX_COUNT;
+        for (int i = 0 ; i < DEPTH ; i++) {
+            frequency = Math.min(frequency, table[index(key, i)]);
+        }
+        return frequency;
+    }
+
+    private int index(long key, int row) {
+        return row * (mask + 1) + (int) (HashCommon.mix(key ^ SEEDS[row]) & mask);
+    }
+
+    private void reset() {
+        for (int i = 0 ; i < table.length ; i++) {
+            table[i] >>= 1;
+        }
+        additions /= 2;
+    }
+}
@@ -0,0 +1,208 @@
+package mcjty.tools.cache;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * A thread safe cache with long keys (typically chunk positions). The cache is split in
+ * lock striped segments and lookups use optimistic reads so they never block unless another
+ * thread is writing to the same segment.
+ *
+ * Every entry has a weight (estimated size in bytes). When a segment is over its share of
+ * the maximum weight the oldest entries are evicted. New entries are only admitted if they
+ * are accessed more often than the entry they would replace (TinyLFU, see FrequencySketch).
+ * An old entry that is more popular than the new one gets a second chance at the back of the
+ * segment. All instances register with the CacheManager which enforces a global budget
+ */
+public class LongCache<V> implements ManagedCache {
+
+    // Estimated overhead of an entry in the map
+    private static final long ENTRY_OVERHEAD = 40;
+
+    private final String name;
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final Segment<V>[] segments;
+    private final FrequencySketch sketch;
+    private final CacheStats stats = new CacheStats();
+    private final AtomicLong weight = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    public LongCache(String name, int expectedSize, long maxWeight, ToLongFunction<V> weigher) {
+        this.name = name;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        int stripes = Math.min(64, HashCommon.nextPowerOfTwo(Math.max(1, expectedSize / 1024)));
+        segments = new Segment[stripes];
+        for (int i = 0 ; i < stripes ; i++) {
+            segments[i] = new Segment<>();
+        }
+        sketch = new FrequencySketch(expectedSize);
+        CacheManager.MANAGER.register(this);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.map.size();
+        }
+        return size;
+    }
+
+    @Override
+    public long getWeight() {
+        return weight.get();
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    private Segment<V> getSegment(long key) {
+        return segments[(int) (HashCommon.mix(key) & (segments.length - 1))];
+    }
+
+    @Nullable
+    public V get(long key) {
+        sketch.increment(key);
+        V value = getSegment(key).get(key);
+        if (value == null) {
+            stats.miss();
+        } else {
+            stats.hit();
+        }
+        return value;
+    }
+
+    public void put(long key, V value) {
+        long w = weigher.applyAsLong(value) + ENTRY_OVERHEAD;
+        Segment<V> segment = getSegment(key);
+        long limit = maxWeight / segments.length;
+        long stamp = segment.lock.writeLock();
+        try {
+            V old = segment.map.remove(key);
+            if (old != null) {
+                removed(segment, old);
+            }
+            boolean secondChance = true;
+            while (segment.weight + w > limit && !segment.map.isEmpty()) {
+                long victim = segment.map.firstLongKey();
+                if (sketch.frequency(victim) > sketch.frequency(key)) {
+                    if (!secondChance) {
+                        stats.rejection();
+                        return;
+                    }
+                    secondChance = false;
+                    segment.map.getAndMoveToLast(victim);
+                    continue;
+                }
+                removed(segment, segment.map.remove(victim));
+                stats.eviction();
+            }
+            segment.map.put(key, value);
+            segment.weight += w;
+            weight.addAndGet(w);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+        CacheManager.MANAGER.checkBudget();
+    }
+
+    public void remove(long key) {
+        Segment<V> segment = getSegment(key);
+        long stamp = segment.lock.writeLock();
+        try {
+            V old = segment.map.remove(key);
+            if (old != null) {
+                removed(segment, old);
+            }
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Segment<V> segment : segments) {
+            long stamp = segment.lock.writeLock();
+            try {
+                segment.map.clear();
+                weight.addAndGet(-segment.weight);
+                segment.weight = 0;
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    @Override
+    public void evict(long toFree) {
+        long freed = 0;
+        boolean progress = true;
+        while (freed < toFree && progress) {
+            progress = false;
+            for (Segment<V> segment : segments) {
+                long stamp = segment.lock.writeLock();
+                try {
+                    if (!segment.map.isEmpty()) {
+                        V old = segment.map.removeFirst();
+                        freed += removed(segment, old);
+                        stats.eviction();
+                        progress = true;
+                    }
+                } finally {
+                    segment.lock.unlockWrite(stamp);
+                }
+            }
+        }
+    }
+
+    // Must be called with the write lock of the segment
+    private long removed(Segment<V> segment, V value) {
+        long w = weigher.applyAsLong(value) + ENTRY_OVERHEAD;
+        segment.weight -= w;
+        weight.addAndGet(-w);
+        return w;
+    }
+
+    private static class Segment<V> {
+        private final StampedLock lock = new StampedLock();
+        private final Long2ObjectLinkedOpenHashMap<V> map = new Long2ObjectLinkedOpenHashMap<>();
+        private long weight = 0;
+
+        @Nullable
+        private V get(long key) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                V value;
+                try {
+                    value = map.get(key);
+                } catch (RuntimeException e) {
+                    // A concurrent write can leave the map in an inconsistent state for an optimistic reader
+                    value = null;
+                }
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return map.get(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package mcjty.tools.cache;
+
+/**
+ * A cache that is known by the CacheManager. The weight of a cache is an estimate of
+ * the memory (in bytes) used by its entries
+ */
+public interface ManagedCache {
+
+    String getName();
+
+    int size();
+
+    long getWeight();
+
+    CacheStats getStats();
+
+    void clear();
+
+    // Evict entries until at least 'weight' bytes are freed (or the cache is empty)
+    void evict(long weight);
+}
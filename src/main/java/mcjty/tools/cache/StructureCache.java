@@ -1,80 +1,253 @@
 package mcjty.tools.cache;
 
 import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import mcjty.tools.varia.Tools;
+import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.RegistryKey;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.IWorld;
+import net.minecraft.world.DimensionType;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.ChunkStatus;
 import net.minecraft.world.chunk.IChunk;
+import net.minecraft.world.gen.WorldGenRegion;
 import net.minecraft.world.gen.feature.structure.Structure;
 import net.minecraft.world.server.ServerWorld;
+import net.minecraft.world.storage.FolderName;
+import net.minecraftforge.registries.ForgeRegistries;
 
-import java.util.HashMap;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Remember where structures are
+ * Remember where structures are. For every dimension this keeps a map from chunk
+ * position to a bitmask of the structures that have a reference in that chunk.
+ * Structure names are interned to small integer ids (see getStructureId())
+ *
+ * This cache can be used from worldgen threads as well as the server thread. Every
+ * dimension has its own LongCache so the memory used by this cache counts towards
+ * the global cache budget (see CacheManager)
+ *
+ * Behind the memory cache there is a persistent cache per dimension (StructureDiskCache)
+ * so that chunks don't have to be inspected again after a restart. To make the bitmasks
+ * stable across restarts all registered structures get an id in sorted name order first
  */
 public class StructureCache {
 
     public static final StructureCache CACHE = new StructureCache();
 
-    private final Map<StructureCacheEntry, Boolean> structureCache = new HashMap<>();
+    // Maximum number of chunks remembered per dimension
+    private static final int MAX_CHUNKS = 100000;
+    // Estimated weight of a cached chunk (entry overhead and a mask of one word)
+    private static final long MASK_WEIGHT = 64;
+    private static final long[] NONE = new long[0];
+
+    private final Object2IntOpenHashMap<String> structureIds = new Object2IntOpenHashMap<>();
+    private final Map<Structure<?>, Integer> structureToId = new ConcurrentHashMap<>();
+    private final Map<RegistryKey<World>, DimensionCache> structureCache = new ConcurrentHashMap<>();
+
+    private boolean registryInitialized = false;
+    private int registryHash = 0;
+    private int registryWords = 1;
+
+    public StructureCache() {
+        structureIds.defaultReturnValue(-1);
+    }
 
     public void clean() {
+        for (DimensionCache cache : structureCache.values()) {
+            cache.close();
+        }
         structureCache.clear();
+        structureToId.clear();
+    }
+
+    private void initRegistry() {
+        if (registryInitialized) {
+            return;
+        }
+        registryInitialized = true;
+        List<String> names = new ArrayList<>();
+        for (ResourceLocation key : ForgeRegistries.STRUCTURE_FEATURES.getKeys()) {
+            names.add(key.toString());
+        }
+        Collections.sort(names);
+        for (String name : names) {
+            structureIds.put(name, structureIds.size());
+        }
+        registryHash = names.hashCode();
+        registryWords = (names.size() + 63) >> 6;
     }
 
-    public boolean isInStructure(IWorld world, String structure, BlockPos pos) {
+    // Intern a structure name. Call this when a rule is loaded and not for every test
+    public synchronized int getStructureId(String structure) {
+        initRegistry();
+        int id = structureIds.getInt(structure);
+        if (id == -1) {
+            id = structureIds.size();
+            structureIds.put(structure, id);
+        }
+        return id;
+    }
+
+    public void onChunkUnload(IWorld world, ChunkPos pos) {
+        DimensionCache cache = structureCache.get(Tools.getDimensionKey(world));
+        if (cache != null) {
+            cache.remove(pos.toLong());
+        }
+    }
+
+    public boolean isInStructure(IWorld world, int structureId, BlockPos pos) {
+        return hasStructure(getStructureMask(world, pos.getX() >> 4, pos.getZ() >> 4), structureId);
+    }
+
+    public static boolean hasStructure(@Nullable long[] mask, int structureId) {
+        if (mask == null) {
+            return false;
+        }
+        int word = structureId >> 6;
+        return word < mask.length && (mask[word] & (1L << structureId)) != 0;
+    }
+
+    public synchronized int getRegistryHash() {
+        initRegistry();
+        return registryHash;
+    }
+
+    // Get the bitmask of all structures in a chunk. Returns null if the chunk is not available
+    @Nullable
+    public long[] getStructureMask(IWorld world, int cx, int cz) {
         RegistryKey<World> dimension = Tools.getDimensionKey(world);
-        ChunkPos cp = new ChunkPos(pos);
-        long cplong = ChunkPos.asLong(cp.x, cp.z);
-        StructureCacheEntry entry = new StructureCacheEntry(structure, dimension, cplong);
-        if (structureCache.containsKey(entry)) {
-            return structureCache.get(entry);
+        DimensionCache cache = structureCache.get(dimension);
+        if (cache == null) {
+            cache = structureCache.computeIfAbsent(dimension, DimensionCache::new);
         }
+        long cplong = ChunkPos.asLong(cx, cz);
+        long[] mask = cache.get(cplong);
+        if (mask == null) {
+            StructureDiskCache disk = getDiskCache(cache, dimension, world);
+            mask = disk == null ? null : disk.get(cx, cz);
+            if (mask != null) {
+                mask = compact(mask);
+            } else {
+                IChunk chunk = getChunk(world, cx, cz);
+                if (chunk == null) {
+                    return null;
+                }
+                mask = computeMask(chunk);
+                if (disk != null) {
+                    disk.put(cx, cz, mask);
+                }
+            }
+            cache.put(cplong, mask);
+        }
+        return mask;
+    }
 
+    private StructureDiskCache getDiskCache(DimensionCache cache, RegistryKey<World> dimension, IWorld world) {
+        if (!cache.diskInitialized) {
+            synchronized (cache) {
+                if (!cache.diskInitialized) {
+                    ServerWorld sw = Tools.getServerWorld(world);
+                    File root = sw.getServer().getWorldPath(FolderName.ROOT).toFile();
+                    File directory = new File(DimensionType.getStorageFolder(dimension, root), "data" + File.separator + "fxcontrol" + File.separator + "structures");
+                    int hash;
+                    int words;
+                    synchronized (this) {
+                        initRegistry();
+                        hash = registryHash;
+                        words = registryWords;
+                    }
+                    cache.disk = new StructureDiskCache(directory, sw.getSeed(), hash, words);
+                    cache.diskInitialized = true;
+                }
+            }
+        }
+        return cache.disk;
+    }
+
+    // Masks without structures all share the same empty array
+    private static long[] compact(long[] mask) {
+        for (long l : mask) {
+            if (l != 0) {
+                return mask;
+            }
+        }
+        return NONE;
+    }
+
+    private static IChunk getChunk(IWorld world, int cx, int cz) {
+        if (world instanceof WorldGenRegion) {
+            // Only chunks that are part of the region can be accessed safely from a worldgen thread
+            return world.getChunk(cx, cz, ChunkStatus.STRUCTURE_REFERENCES, false);
+        }
         ServerWorld sw = Tools.getServerWorld(world);
-        IChunk chunk = sw.getChunk(pos.getX() >> 4, pos.getZ() >> 4, ChunkStatus.STRUCTURE_REFERENCES, false);
-        if (chunk == null) {
-            return false;
+        if (!sw.getServer().isSameThread()) {
+            return null;
         }
+        return sw.getChunk(cx, cz, ChunkStatus.STRUCTURE_REFERENCES, false);
+    }
+
+    long[] computeMask(IChunk chunk) {
+        long[] mask = NONE;
         Map<Structure<?>, LongSet> references = chunk.getAllReferences();
         for (Map.Entry<Structure<?>, LongSet> e : references.entrySet()) {
             LongSet longs = e.getValue();
             if (!longs.isEmpty()) {
-                structureCache.put(new StructureCacheEntry(e.getKey().getRegistryName().toString(), dimension, cplong), true);
+                int id = getStructureId(e.getKey());
+                int word = id >> 6;
+                if (word >= mask.length) {
+                    mask = Arrays.copyOf(mask, word + 1);
+                }
+                mask[word] |= 1L << id;
             }
         }
+        return mask;
+    }
 
-        if (structureCache.containsKey(entry)) {
-            return true;
-        } else {
-            structureCache.put(entry, false);
-            return false;
+    private int getStructureId(Structure<?> structure) {
+        Integer id = structureToId.get(structure);
+        if (id == null) {
+            id = getStructureId(structure.getRegistryName().toString());
+            structureToId.put(structure, id);
         }
+        return id;
     }
 
-//    private static Set<Long> parseStructureData(MapGenStructureData data) {
-//        Set<Long> chunks = new HashSet<>();
-//        CompoundNBT nbttagcompound = data.getTagCompound();
-//
-//        for (String s : nbttagcompound.getKeySet()) {
-//            NBTBase nbtbase = nbttagcompound.getTag(s);
-//
-//            if (nbtbase.getId() == 10) {
-//                CompoundNBT nbttagcompound1 = (CompoundNBT) nbtbase;
-//
-//                if (nbttagcompound1.hasKey("ChunkX") && nbttagcompound1.hasKey("ChunkZ")) {
-//                    int i = nbttagcompound1.getInteger("ChunkX");
-//                    int j = nbttagcompound1.getInteger("ChunkZ");
-//                    chunks.add(ChunkPos.asLong(i, j));
-//                }
-//            }
-//        }
-//        return chunks;
-//    }
+    private static class DimensionCache {
+        private final LongCache<long[]> masks;
+        private volatile boolean diskInitialized = false;
+        private StructureDiskCache disk = null;
+
+        private DimensionCache(RegistryKey<World> dimension) {
+            masks = new LongCache<>("structures " + dimension.location(), MAX_CHUNKS, MAX_CHUNKS * MASK_WEIGHT, mask -> 16 + mask.length * 8L);
+        }
+
+        private long[] get(long cplong) {
+            return masks.get(cplong);
+        }
+
+        private void put(long cplong, long[] mask) {
+            masks.put(cplong, mask);
+        }
+
+        private void remove(long cplong) {
+            masks.remove(cplong);
+        }
+
+        private synchronized void close() {
+            CacheManager.MANAGER.unregister(masks);
+            if (disk != null) {
+                disk.close();
+            }
+        }
+    }
 }
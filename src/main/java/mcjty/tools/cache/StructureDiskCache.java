@@ -0,0 +1,171 @@
+package mcjty.tools.cache;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import mcjty.fxcontrol.FxControl;
+import net.minecraft.util.math.ChunkPos;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Persistent structure presence cache for a single dimension. Chunks are grouped in
+ * regions of 32x32 chunks and every region is a fixed size file that is accessed through
+ * a MappedByteBuffer. A region file has this layout:
+ *
+ *   header (32 bytes): magic, version, world seed, structure registry hash, words per chunk
+ *   present bitmap (1024 bits): set if the chunk has been computed
+ *   1024 entries of 'words' longs: the structure bitmask of every chunk
+ *
+ * A region file that doesn't match the current seed or structure registry is reset
+ *
+ * At most MAX_REGIONS regions are kept open. The least recently used region is flushed
+ * and forgotten when another one is needed (the mapping itself is released by the GC)
+ */
+public class StructureDiskCache {
+
+    private static final int MAGIC = 0x46585343;     // 'FXSC'
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int BITMAP_SIZE = 1024 / 8;
+    private static final int MAX_REGIONS = 64;
+
+    private final File directory;
+    private final long seed;
+    private final int registryHash;
+    private final int words;
+    private final Long2ObjectLinkedOpenHashMap<Region> regions = new Long2ObjectLinkedOpenHashMap<>();
+    private boolean broken = false;
+
+    public StructureDiskCache(File directory, long seed, int registryHash, int words) {
+        this.directory = directory;
+        this.seed = seed;
+        this.registryHash = registryHash;
+        this.words = Math.max(1, words);
+    }
+
+    // Returns null if the chunk is not in the cache
+    @Nullable
+    public long[] get(int cx, int cz) {
+        Region region = getRegion(cx, cz);
+        return region == null ? null : region.get(index(cx, cz));
+    }
+
+    public void put(int cx, int cz, long[] mask) {
+        Region region = getRegion(cx, cz);
+        if (region != null) {
+            region.put(index(cx, cz), mask);
+        }
+    }
+
+    public synchronized void close() {
+        for (Region region : regions.values()) {
+            region.close();
+        }
+        regions.clear();
+    }
+
+    private static int index(int cx, int cz) {
+        return (cx & 31) + ((cz & 31) << 5);
+    }
+
+    @Nullable
+    private synchronized Region getRegion(int cx, int cz) {
+        if (broken) {
+            return null;
+        }
+        long key = ChunkPos.asLong(cx >> 5, cz >> 5);
+        Region region = regions.getAndMoveToLast(key);
+        if (region == null) {
+            if (regions.size() >= MAX_REGIONS) {
+                regions.removeFirst().close();
+            }
+            try {
+                region = openRegion(cx >> 5, cz >> 5);
+            } catch (IOException e) {
+                FxControl.setup.getLogger().error("Error opening structure cache in '" + directory + "', disabling it", e);
+                broken = true;
+                return null;
+            }
+            regions.put(key, region);
+        }
+        return region;
+    }
+
+    private Region openRegion(int rx, int rz) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Can't create directory");
+        }
+        File file = new File(directory, "r." + rx + "." + rz + ".fxs");
+        long size = HEADER_SIZE + BITMAP_SIZE + 1024L * words * 8;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            boolean fresh = raf.length() != size;
+            raf.setLength(size);
+            FileChannel channel = raf.getChannel();
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (fresh || !isValid(buffer)) {
+                reset(buffer, size);
+            }
+            return new Region(buffer);
+        }
+    }
+
+    private boolean isValid(MappedByteBuffer buffer) {
+        return buffer.getInt(0) == MAGIC
+                && buffer.getInt(4) == VERSION
+                && buffer.getLong(8) == seed
+                && buffer.getInt(16) == registryHash
+                && buffer.getInt(20) == words;
+    }
+
+    private void reset(MappedByteBuffer buffer, long size) {
+        for (int i = 0 ; i < size ; i += 8) {
+            buffer.putLong(i, 0);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, seed);
+        buffer.putInt(16, registryHash);
+        buffer.putInt(20, words);
+    }
+
+    private class Region {
+        private final MappedByteBuffer buffer;
+
+        private Region(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        // Synchronized on the region like put() so that a reader always sees a complete mask
+        @Nullable
+        private synchronized long[] get(int index) {
+            long present = buffer.getLong(HEADER_SIZE + (index >> 6) * 8);
+            if ((present & (1L << index)) == 0) {
+                return null;
+            }
+            int offset = HEADER_SIZE + BITMAP_SIZE + index * words * 8;
+            long[] mask = new long[words];
+            for (int i = 0 ; i < words ; i++) {
+                mask[i] = buffer.getLong(offset + i * 8);
+            }
+            return mask;
+        }
+
+        private synchronized void put(int index, long[] mask) {
+            int offset = HEADER_SIZE + BITMAP_SIZE + index * words * 8;
+            for (int i = 0 ; i < words ; i++) {
+                buffer.putLong(offset + i * 8, i < mask.length ? mask[i] : 0);
+            }
+            int bitmap = HEADER_SIZE + (index >> 6) * 8;
+            buffer.putLong(bitmap, buffer.getLong(bitmap) | (1L << index));
+        }
+
+        private synchronized void close() {
+            buffer.force();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package mcjty.tools.cache;
+
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2FloatOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import mcjty.tools.varia.Tools;
+import net.minecraft.util.RegistryKey;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.World;
+import net.minecraft.world.gen.Heightmap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Values that rules often need for the same position in the same tick (for example
+ * because several rules test the same player). Everything in here is only valid for
+ * the current game tick of a world and is forgotten as soon as the world time changes
+ */
+public class TickCache {
+
+    public static final TickCache CACHE = new TickCache();
+
+    private boolean fastSeeSky = false;
+    private final Map<RegistryKey<World>, WorldCache> caches = new HashMap<>();
+
+    // If true 'seesky' uses the MOTION_BLOCKING heightmap instead of the sky light
+    public void setFastSeeSky(boolean fastSeeSky) {
+        this.fastSeeSky = fastSeeSky;
+    }
+
+    public void clean() {
+        caches.clear();
+    }
+
+    public boolean canSeeSky(IWorld world, BlockPos pos) {
+        WorldCache cache = getCache(world);
+        if (fastSeeSky) {
+            long column = BlockPos.asLong(pos.getX(), 0, pos.getZ());
+            int height = cache.skyHeight.get(column);
+            if (height == Integer.MIN_VALUE) {
+                height = world.getHeight(Heightmap.Type.MOTION_BLOCKING, pos.getX(), pos.getZ());
+                cache.skyHeight.put(column, height);
+            }
+            return pos.getY() >= height;
+        }
+        long key = pos.asLong();
+        byte sky = cache.sky.get(key);
+        if (sky == -1) {
+            sky = (byte) (world.canSeeSkyFromBelowWater(pos) ? 1 : 0);
+            cache.sky.put(key, sky);
+        }
+        return sky == 1;
+    }
+
+    public int getLight(IWorld world, BlockPos pos) {
+        WorldCache cache = getCache(world);
+        long key = pos.asLong();
+        byte light = cache.light.get(key);
+        if (light == -1) {
+            light = (byte) world.getMaxLocalRawBrightness(pos);
+            cache.light.put(key, light);
+        }
+        return light;
+    }
+
+    // The local difficulty only depends on the chunk (inhabited time) and the world time
+    public float getEffectiveDifficulty(IWorld world, BlockPos pos) {
+        WorldCache cache = getCache(world);
+        long key = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+        float difficulty = cache.difficulty.get(key);
+        if (Float.isNaN(difficulty)) {
+            difficulty = world.getCurrentDifficultyAt(pos).getEffectiveDifficulty();
+            cache.difficulty.put(key, difficulty);
+        }
+        return difficulty;
+    }
+
+    private WorldCache getCache(IWorld world) {
+        WorldCache cache = caches.computeIfAbsent(Tools.getDimensionKey(world), k -> new WorldCache());
+        long time = world.getLevelData().getGameTime();
+        if (cache.time != time) {
+            cache.clear();
+            cache.time = time;
+        }
+        return cache;
+    }
+
+    private static class WorldCache {
+        private long time = -1;
+        private final Long2IntOpenHashMap skyHeight = new Long2IntOpenHashMap();
+        private final Long2ByteOpenHashMap sky = new Long2ByteOpenHashMap();
+        private final Long2ByteOpenHashMap light = new Long2ByteOpenHashMap();
+        private final Long2FloatOpenHashMap difficulty = new Long2FloatOpenHashMap();
+
+        private WorldCache() {
+            skyHeight.defaultReturnValue(Integer.MIN_VALUE);
+            sky.defaultReturnValue((byte) -1);
+            light.defaultReturnValue((byte) -1);
+            difficulty.defaultReturnValue(Float.NaN);
+        }
+
+        private void clear() {
+            skyHeight.clear();
+            sky.clear();
+            light.clear();
+            difficulty.clear();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package mcjty.tools.rules;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Server wide budget for expensive actions. Every tick a fixed amount of cost units is
+ * available. Actions that don't fit are queued (bounded) and executed in later ticks
+ */
+public class ActionBudget {
+
+    public static final int COST_POTION = 1;
+    public static final int COST_GIVE = 2;
+    public static final int COST_DROP = 2;
+    public static final int COST_SETBLOCK = 4;
+    public static final int COST_EXPLOSION = 25;
+
+    public static final ActionBudget BUDGET = new ActionBudget();
+
+    private int budget = 200;
+    private int queueSize = 10000;
+    private int remaining = budget;
+    private long tick = 0;
+    private final Deque<Pending> queue = new ArrayDeque<>();
+
+    // Statistics
+    private long executed = 0;
+    private long delayed = 0;
+    private long dropped = 0;
+    private long dequeued = 0;
+    private long totalWait = 0;
+    private long maxWait = 0;
+    private int maxDepth = 0;
+
+    public void setLimits(int budget, int queueSize) {
+        this.budget = budget;
+        this.queueSize = queueSize;
+    }
+
+    // Returns false if the action was dropped because the queue is full
+    public boolean run(int cost, Runnable action) {
+        cost = Math.min(cost, budget);
+        if (queue.isEmpty() && remaining >= cost) {
+            remaining -= cost;
+            executed++;
+            action.run();
+        } else if (queue.size() < queueSize) {
+            queue.addLast(new Pending(action, cost, tick));
+            delayed++;
+            maxDepth = Math.max(maxDepth, queue.size());
+        } else {
+            dropped++;
+            return false;
+        }
+        return true;
+    }
+
+    // For actions that can't be delayed. The action always runs now but its cost is still taken from this tick
+    public void runNow(int cost, Runnable action) {
+        remaining = Math.max(0, remaining - Math.min(cost, budget));
+        executed++;
+        action.run();
+    }
+
+    // Called at the start of every server tick
+    public void tick() {
+        tick++;
+        remaining = budget;
+        while (!queue.isEmpty()) {
+            // The budget may have been lowered after this action was queued. Cap the cost again
+            // so the head of the queue can always run
+            int cost = Math.min(queue.peekFirst().cost, budget);
+            if (cost > remaining) {
+                break;
+            }
+            Pending pending = queue.removeFirst();
+            remaining -= cost;
+            dequeued++;
+            long wait = tick - pending.tick;
+            totalWait += wait;
+            maxWait = Math.max(maxWait, wait);
+            executed++;
+            pending.action.run();
+        }
+    }
+
+    public void clear() {
+        queue.clear();
+        remaining = budget;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getExecuted() {
+        return executed;
+    }
+
+    public long getDelayed() {
+        return delayed;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    // Average time (in ticks) a delayed action spent in the queue
+    public double getAverageWait() {
+        return dequeued == 0 ? 0 : (double) totalWait / dequeued;
+    }
+
+    private static class Pending {
+        private final Runnable action;
+        private final int cost;
+        private final long tick;
+
+        private Pending(Runnable action, int cost, long tick) {
+            this.action = action;
+            this.cost = cost;
+            this.tick = tick;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package mcjty.tools.rules;
+
+import mcjty.tools.cache.ChunkSummary;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.registry.DynamicRegistries;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.biome.Biome;
+
+import java.util.BitSet;
+import java.util.function.BiPredicate;
+
+/**
+ * A compiled biome test (biome names, categories or biome types). The result for every
+ * biome is kept in a bitset indexed by the raw id of the biome in the server registry so the
+ * (expensive) test is only done once for every biome. Biomes are sampled at quart (4x4x4)
+ * resolution from the biome ids cached in the chunk summary
+ */
+public class BiomeMatcher {
+
+    private final BiPredicate<ResourceLocation, Biome> predicate;
+
+    private DynamicRegistries registries = null;
+    private Registry<Biome> registry = null;
+    private final BitSet known = new BitSet();
+    private final BitSet accepted = new BitSet();
+
+    public BiomeMatcher(BiPredicate<ResourceLocation, Biome> predicate) {
+        this.predicate = predicate;
+    }
+
+    public boolean test(IWorld world, BlockPos pos) {
+        if (world.registryAccess() != registries) {
+            // Raw ids are only valid for a given registry
+            registries = world.registryAccess();
+            registry = registries.registryOrThrow(Registry.BIOME_REGISTRY);
+            known.clear();
+            accepted.clear();
+        }
+        int id = -1;
+        ChunkSummary summary = ChunkSummary.get(world, pos);
+        if (summary != null) {
+            id = summary.getBiomeId(pos);
+        }
+        if (id == -1) {
+            id = registry.getId(world.getNoiseBiome(pos.getX() >> 2, pos.getY() >> 2, pos.getZ() >> 2));
+            if (id == -1) {
+                return false;
+            }
+        }
+        if (!known.get(id)) {
+            Biome biome = registry.byId(id);
+            ResourceLocation key = biome == null ? null : registry.getKey(biome);
+            if (key != null && predicate.test(key, biome)) {
+                accepted.set(id);
+            }
+            known.set(id);
+        }
+        return accepted.get(id);
+    }
+}
@@ -0,0 +1,108 @@
+package mcjty.tools.rules;
+
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IWorld;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+/**
+ * A compiled list of block descriptions. Plain blocks and block states are kept in
+ * identity sets so that testing a list of blocks only fetches the block state once and
+ * does a single set lookup. Descriptions with extra tests (mod, energy, contains) are
+ * indexed by block and these tests are only done for a block that matches
+ */
+public class BlockMatcher {
+
+    private final ReferenceOpenHashSet<Block> blocks = new ReferenceOpenHashSet<>();
+    private final ReferenceOpenHashSet<BlockState> states = new ReferenceOpenHashSet<>();
+    private final Reference2ObjectOpenHashMap<Block, List<Entry>> refined = new Reference2ObjectOpenHashMap<>();
+    private final List<Entry> wildcards = new ArrayList<>();
+    private boolean any = false;
+
+    // Add a block description. If both block and state are null this matches every block
+    public void add(@Nullable Block block, @Nullable BlockState state, @Nullable String mod, @Nullable BiPredicate<IWorld, BlockPos> refinement) {
+        if (state != null) {
+            block = state.getBlock();
+        }
+        if (block != null && mod != null) {
+            // The mod of a known block can be tested right now
+            if (!mod.equals(block.getRegistryName().getNamespace())) {
+                return;
+            }
+            mod = null;
+        }
+        if (mod == null && refinement == null) {
+            if (state != null) {
+                states.add(state);
+            } else if (block != null) {
+                blocks.add(block);
+            } else {
+                any = true;
+            }
+            return;
+        }
+        Entry entry = new Entry(state, mod, refinement);
+        if (block != null) {
+            refined.computeIfAbsent(block, b -> new ArrayList<>()).add(entry);
+        } else {
+            wildcards.add(entry);
+        }
+    }
+
+    public boolean test(IWorld world, BlockPos pos) {
+        if (world.getChunkSource().getChunkNow(pos.getX() >> 4, pos.getZ() >> 4) == null) {
+            return false;
+        }
+        BlockState state = world.getBlockState(pos);
+        if (any || states.contains(state)) {
+            return true;
+        }
+        Block block = state.getBlock();
+        if (blocks.contains(block)) {
+            return true;
+        }
+        List<Entry> entries = refined.get(block);
+        if (entries != null) {
+            for (Entry entry : entries) {
+                if (entry.test(world, pos, state)) {
+                    return true;
+                }
+            }
+        }
+        for (Entry entry : wildcards) {
+            if (entry.test(world, pos, state)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Entry {
+        private final BlockState state;
+        private final String mod;
+        private final BiPredicate<IWorld, BlockPos> refinement;
+
+        private Entry(BlockState state, String mod, BiPredicate<IWorld, BlockPos> refinement) {
+            this.state = state;
+            this.mod = mod;
+            this.refinement = refinement;
+        }
+
+        private boolean test(IWorld world, BlockPos pos, BlockState s) {
+            if (state != null && state != s) {
+                return false;
+            }
+            if (mod != null && !mod.equals(s.getBlock().getRegistryName().getNamespace())) {
+                return false;
+            }
+            return refinement == null || refinement.test(world, pos);
+        }
+    }
+}
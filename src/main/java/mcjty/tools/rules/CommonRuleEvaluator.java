@@ -5,7 +5,10 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import mcjty.fxcontrol.ErrorHandler;
+import mcjty.tools.cache.BlockProbeCache;
+import mcjty.tools.cache.ChunkSummary;
 import mcjty.tools.cache.StructureCache;
+import mcjty.tools.cache.TickCache;
 import mcjty.tools.typed.AttributeMap;
 import mcjty.tools.typed.Key;
 import mcjty.tools.varia.LookAtTools;
@@ -16,11 +19,7 @@ import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.inventory.EquipmentSlotType;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
-import net.minecraft.nbt.CompoundNBT;
-import net.minecraft.nbt.INBT;
-import net.minecraft.nbt.ListNBT;
 import net.minecraft.state.Property;
-import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.Direction;
 import net.minecraft.util.RegistryKey;
 import net.minecraft.util.ResourceLocation;
@@ -31,13 +30,10 @@ import net.minecraft.world.Difficulty;
 import net.minecraft.world.IWorld;
 import net.minecraft.world.World;
 import net.minecraft.world.biome.Biome;
-import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.server.ServerWorld;
 import net.minecraftforge.common.BiomeManager;
-import net.minecraftforge.common.util.Constants;
 import net.minecraftforge.energy.CapabilityEnergy;
 import net.minecraftforge.energy.IEnergyStorage;
-import net.minecraftforge.items.CapabilityItemHandler;
 import net.minecraftforge.registries.ForgeRegistries;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.Logger;
@@ -300,9 +296,9 @@ public class CommonRuleEvaluator {
 
     private void addSeeSkyCheck(AttributeMap map) {
         if (map.get(SEESKY)) {
-            checks.add((event,query) -> query.getWorld(event).canSeeSkyFromBelowWater(query.getPos(event)));
+            checks.add((event,query) -> TickCache.CACHE.canSeeSky(query.getWorld(event), query.getPos(event)));
         } else {
-            checks.add((event,query) -> !query.getWorld(event).canSeeSkyFromBelowWater(query.getPos(event)));
+            checks.add((event,query) -> !TickCache.CACHE.canSeeSky(query.getWorld(event), query.getPos(event)));
         }
     }
 
@@ -369,53 +365,40 @@ public class CommonRuleEvaluator {
     private void addCategoryCheck(AttributeMap map) {
         List<String> list = map.getList(CATEGORY);
         Set<Biome.Category> categories = list.stream().map(s -> Biome.Category.byName(s.toLowerCase())).collect(Collectors.toSet());
-        checks.add((event,query) -> {
-            Biome biome = query.getWorld(event).getBiome(query.getPos(event));
-            return categories.contains(biome.getBiomeCategory());
-        });
+        BiomeMatcher matcher = new BiomeMatcher((id, biome) -> categories.contains(biome.getBiomeCategory()));
+        checks.add((event,query) -> matcher.test(query.getWorld(event), query.getPos(event)));
     }
 
 
     private void addStructureCheck(AttributeMap map) {
-        String structure = map.get(STRUCTURE);
-        checks.add((event,query) -> StructureCache.CACHE.isInStructure(query.getWorld(event), structure, query.getPos(event)));
+        int structure = StructureCache.CACHE.getStructureId(map.get(STRUCTURE));
+        checks.add((event,query) -> {
+            IWorld world = query.getWorld(event);
+            BlockPos pos = query.getPos(event);
+            ChunkSummary summary = ChunkSummary.get(world, pos);
+            if (summary != null) {
+                return StructureCache.hasStructure(summary.getStructures(), structure);
+            }
+            return StructureCache.CACHE.isInStructure(world, structure, pos);
+        });
     }
 
     private void addBiomesCheck(AttributeMap map) {
-        List<String> biomes = map.getList(BIOME);
-        if (biomes.size() == 1) {
-            String biomename = biomes.get(0);
-            checks.add((event,query) -> {
-                Biome biome = query.getWorld(event).getBiome(query.getPos(event));
-                if (Tools.getBiomeId(biome).equals(biomename)) {
-                    return true;
-                } else {
-                    return biomename.equals(compatibility.getBiomeName(biome));
-                }
-            });
-        } else {
-            Set<String> biomenames = new HashSet<>(biomes);
-            checks.add((event,query) -> {
-                Biome biome = query.getWorld(event).getBiome(query.getPos(event));
-                if (biomenames.contains(biome.getRegistryName().toString())) {
-                    return true;
-                } else {
-                    return biomenames.contains(compatibility.getBiomeName(biome));
-                }
-            });
-        }
+        Set<String> biomenames = new HashSet<>(map.getList(BIOME));
+        // Registry and translated names are only resolved once for every biome
+        BiomeMatcher matcher = new BiomeMatcher((id, biome) -> biomenames.contains(id.toString())
+                || (biome.getRegistryName() != null && biomenames.contains(compatibility.getBiomeName(biome))));
+        checks.add((event,query) -> matcher.test(query.getWorld(event), query.getPos(event)));
     }
 
     private void addBiomeTypesCheck(AttributeMap map) {
         List<String> biomeTypes = map.getList(BIOMETYPE);
-        Set<Biome> biomes = new HashSet<>();
+        Set<ResourceLocation> biomes = new HashSet<>();
         biomeTypes.stream().map(s -> BiomeManager.BiomeType.valueOf(s.toUpperCase())).
-                forEach(type -> BiomeManager.getBiomes(type).stream().forEach(t -> biomes.add(ForgeRegistries.BIOMES.getValue(t.getKey().getRegistryName()))));
+                forEach(type -> BiomeManager.getBiomes(type).stream().forEach(t -> biomes.add(t.getKey().location())));
 
-        checks.add((event,query) -> {
-            Biome biome = query.getWorld(event).getBiome(query.getPos(event));
-            return biomes.contains(biome);
-        });
+        BiomeMatcher matcher = new BiomeMatcher((id, biome) -> biomes.contains(id));
+        checks.add((event,query) -> matcher.test(query.getWorld(event), query.getPos(event)));
     }
 
     private static final int[] EMPTYINTS = new int[0];
@@ -464,28 +447,8 @@ public class CommonRuleEvaluator {
         return (event, query) -> query.getValidBlockPos(event).offset(offsetX, offsetY, offsetZ);
     }
 
-    private static boolean testBlockStateSafe(IWorld world, BlockPos pos, Block block) {
-        Chunk chunk = world.getChunkSource().getChunkNow(pos.getX() >> 4, pos.getZ() >> 4);
-        if (chunk != null) {
-            BlockState state = world.getBlockState(pos);
-            return state.getBlock() == block;
-        } else {
-            return false;
-        }
-    }
-
-    private static boolean testBlockStateSafe(IWorld world, BlockPos pos, BlockState block) {
-        Chunk chunk = world.getChunkSource().getChunkNow(pos.getX() >> 4, pos.getZ() >> 4);
-        if (chunk != null) {
-            BlockState state = world.getBlockState(pos);
-            return state == block;
-        } else {
-            return false;
-        }
-    }
-
-    @Nullable
-    private BiPredicate<IWorld, BlockPos> parseBlock(String json) {
+    // Add the block description to the matcher. Returns false if the description is not valid
+    private boolean parseBlock(String json, BlockMatcher matcher) {
         JsonParser parser = new JsonParser();
         JsonElement element = parser.parse(json);
         if (element.isJsonPrimitive()) {
@@ -494,32 +457,34 @@ public class CommonRuleEvaluator {
                 // @todo 1.15 ore dictionary?
 //                int oreId = OreDictionary.getOreID(blockname.substring(4));
 //                return (world, pos) -> isMatchingOreDict(oreId, world.getBlockState(pos).getBlock());
-                return (world, pos) -> false;
+                return true;
             } else {
                 if (!ForgeRegistries.BLOCKS.containsKey(new ResourceLocation(blockname))) {
                     ErrorHandler.error("Block '" + blockname + "' is not valid!");
-                    return null;
+                    return false;
                 }
                 Block block = ForgeRegistries.BLOCKS.getValue(new ResourceLocation(blockname));
-                return (world, pos) -> testBlockStateSafe(world, pos, block);
+                matcher.add(block, null, null, null);
+                return true;
             }
         } else if (element.isJsonObject()) {
             JsonObject obj = element.getAsJsonObject();
-            BiPredicate<IWorld, BlockPos> test;
+            Block block = null;
+            BlockState blockState = null;
             if (obj.has("ore")) {
                 // @todo 1.15 ore dictionary?
 //                int oreId = OreDictionary.getOreID(obj.get("ore").getAsString());
 //                test = (world, pos) -> isMatchingOreDict(oreId, world.getBlockState(pos).getBlock());
-                test = (world, pos) -> false;
+                return true;
             } else if (obj.has("block")) {
                 String blockname = obj.get("block").getAsString();
                 if (!ForgeRegistries.BLOCKS.containsKey(new ResourceLocation(blockname))) {
                     ErrorHandler.error("Block '" + blockname + "' is not valid!");
-                    return null;
+                    return false;
                 }
-                Block block = ForgeRegistries.BLOCKS.getValue(new ResourceLocation(blockname));
+                block = ForgeRegistries.BLOCKS.getValue(new ResourceLocation(blockname));
                 if (obj.has("properties")) {
-                    BlockState blockState = block.defaultBlockState();
+                    blockState = block.defaultBlockState();
                     JsonArray propArray = obj.get("properties").getAsJsonArray();
                     for (JsonElement el : propArray) {
                         JsonObject propObj = el.getAsJsonObject();
@@ -531,27 +496,13 @@ public class CommonRuleEvaluator {
                             }
                         }
                     }
-                    BlockState finalBlockState = blockState;
-                    test = (world, pos) -> testBlockStateSafe(world, pos, finalBlockState);
-                } else {
-                    test = (world, pos) -> testBlockStateSafe(world, pos, block);
                 }
-            } else {
-                test = (world, pos) -> true;
             }
 
-            if (obj.has("mod")) {
-                String mod = obj.get("mod").getAsString();
-                BiPredicate<IWorld, BlockPos> finalTest = test;
-                test = (world, pos) -> {
-                    Chunk chunk = world.getChunkSource().getChunkNow(pos.getX() >> 4, pos.getZ() >> 4);
-                    if (chunk != null) {
-                        return finalTest.test(world, pos) && mod.equals(world.getBlockState(pos).getBlock().getRegistryName().getNamespace());
-                    } else {
-                        return false;
-                    }
-                };
-            }
+            String mod = obj.has("mod") ? obj.get("mod").getAsString() : null;
+
+            // Extra tests that are only done when the block itself matches
+            BiPredicate<IWorld, BlockPos> test = null;
             if (obj.has("energy")) {
                 Predicate<Integer> energy = getExpression(obj.get("energy"), logger);
                 if (energy != null) {
@@ -561,8 +512,7 @@ public class CommonRuleEvaluator {
                     } else {
                         side = null;
                     }
-                    BiPredicate<IWorld, BlockPos> finalTest = test;
-                    test = (world, pos) -> finalTest.test(world, pos) && energy.test(getEnergy(world, pos, side));
+                    test = (world, pos) -> energy.test(BlockProbeCache.CACHE.getEnergy(world, pos, side));
                 }
             }
             if (obj.has("contains")) {
@@ -572,32 +522,27 @@ public class CommonRuleEvaluator {
                 } else {
                     side = null;
                 }
-                List<Predicate<ItemStack>> items = getItems(obj.get("contains"));
-                BiPredicate<IWorld, BlockPos> finalTest = test;
-                test = (world, pos) -> finalTest.test(world, pos) && contains(world, pos, side, items);
+                ItemMatcher items = getItems(obj.get("contains"));
+                BiPredicate<IWorld, BlockPos> containsTest = (world, pos) -> BlockProbeCache.CACHE.contains(world, pos, side, items);
+                test = test == null ? containsTest : test.and(containsTest);
             }
 
-            return test;
+            matcher.add(block, blockState, mod, test);
+            return true;
         } else {
             ErrorHandler.error("Block description '" + json + "' is not valid!");
         }
-        return null;
+        return false;
     }
 
-    protected List<Predicate<ItemStack>> getItems(JsonElement itemObj) {
-        List<Predicate<ItemStack>> items = new ArrayList<>();
+    protected ItemMatcher getItems(JsonElement itemObj) {
+        ItemMatcher items = new ItemMatcher();
         if (itemObj.isJsonObject()) {
-            Predicate<ItemStack> matcher = getMatcher(itemObj.getAsJsonObject(), logger);
-            if (matcher != null) {
-                items.add(matcher);
-            }
+            addMatcher(itemObj.getAsJsonObject(), items, logger);
         } else if (itemObj.isJsonArray()) {
             for (JsonElement element : itemObj.getAsJsonArray()) {
                 JsonObject obj = element.getAsJsonObject();
-                Predicate<ItemStack> matcher = getMatcher(obj, logger);
-                if (matcher != null) {
-                    items.add(matcher);
-                }
+                addMatcher(obj, items, logger);
             }
         } else {
             ErrorHandler.error("Item description is not valid!");
@@ -622,39 +567,17 @@ public class CommonRuleEvaluator {
             posFunction = (event, query) -> query.getValidBlockPos(event);
         }
 
-        List<String> blocks = map.getList(BLOCK);
-        if (blocks.size() == 1) {
-            String json = blocks.get(0);
-            BiPredicate<IWorld, BlockPos> blockMatcher = parseBlock(json);
-            if (blockMatcher != null) {
-                checks.add((event, query) -> {
-                    BlockPos pos = posFunction.apply(event, query);
-                    return pos != null && blockMatcher.test(query.getWorld(event), pos);
-                });
-            }
-        } else {
-            List<BiPredicate<IWorld, BlockPos>> blockMatchers = new ArrayList<>();
-            for (String block : blocks) {
-                BiPredicate<IWorld, BlockPos> blockMatcher = parseBlock(block);
-                if (blockMatcher == null) {
-                    return;
-                }
-                blockMatchers.add(blockMatcher);
+        BlockMatcher blockMatcher = new BlockMatcher();
+        for (String block : map.getList(BLOCK)) {
+            if (!parseBlock(block, blockMatcher)) {
+                return;
             }
-
-            checks.add((event,query) -> {
-                BlockPos pos = posFunction.apply(event, query);
-                if (pos != null) {
-                    IWorld world = query.getWorld(event);
-                    for (BiPredicate<IWorld, BlockPos> matcher : blockMatchers) {
-                        if (matcher.test(world, pos)) {
-                            return true;
-                        }
-                    }
-                }
-                return false;
-            });
         }
+
+        checks.add((event,query) -> {
+            BlockPos pos = posFunction.apply(event, query);
+            return pos != null && blockMatcher.test(query.getWorld(event), pos);
+        });
     }
 
     private static boolean isMatchingOreId(int[] oreIDs, int oreId) {
@@ -720,7 +643,7 @@ public class CommonRuleEvaluator {
         final int minlight = map.get(MINLIGHT);
         checks.add((event,query) -> {
             BlockPos pos = query.getPos(event);
-            return query.getWorld(event).getMaxLocalRawBrightness(pos) >= minlight;
+            return TickCache.CACHE.getLight(query.getWorld(event), pos) >= minlight;
         });
     }
 
@@ -728,18 +651,18 @@ public class CommonRuleEvaluator {
         final int maxlight = map.get(MAXLIGHT);
         checks.add((event,query) -> {
             BlockPos pos = query.getPos(event);
-            return query.getWorld(event).getMaxLocalRawBrightness(pos) <= maxlight;
+            return TickCache.CACHE.getLight(query.getWorld(event), pos) <= maxlight;
         });
     }
 
     private void addMinAdditionalDifficultyCheck(AttributeMap map) {
         final Float mindifficulty = map.get(MINDIFFICULTY);
-        checks.add((event,query) -> query.getWorld(event).getCurrentDifficultyAt(query.getPos(event)).getEffectiveDifficulty() >= mindifficulty);
+        checks.add((event,query) -> TickCache.CACHE.getEffectiveDifficulty(query.getWorld(event), query.getPos(event)) >= mindifficulty);
     }
 
     private void addMaxAdditionalDifficultyCheck(AttributeMap map) {
         final Float maxdifficulty = map.get(MAXDIFFICULTY);
-        checks.add((event,query) -> query.getWorld(event).getCurrentDifficultyAt(query.getPos(event)).getEffectiveDifficulty() <= maxdifficulty);
+        checks.add((event,query) -> TickCache.CACHE.getEffectiveDifficulty(query.getWorld(event), query.getPos(event)) <= maxdifficulty);
     }
 
     private void addMaxHeightCheck(AttributeMap map) {
@@ -818,52 +741,50 @@ public class CommonRuleEvaluator {
         }
     }
 
-    private static Predicate<ItemStack> getMatcher(String name, Logger logger) {
+    private static void addMatcher(String name, ItemMatcher matcher, Logger logger) {
         ItemStack stack = Tools.parseStack(name, logger);
         if (!stack.isEmpty()) {
             // Stack matching
             if (name.contains("/") && name.contains("@")) {
-                return s -> ItemStack.isSame(s, stack) && ItemStack.tagMatches(s, stack);
+                matcher.add(stack.getItem(), s -> ItemStack.isSame(s, stack) && ItemStack.tagMatches(s, stack));
             } else if (name.contains("/")) {
-                return s -> ItemStack.isSameIgnoreDurability(s, stack) && ItemStack.tagMatches(s, stack);
+                matcher.add(stack.getItem(), s -> ItemStack.isSameIgnoreDurability(s, stack) && ItemStack.tagMatches(s, stack));
             } else if (name.contains("@")) {
-                return s -> ItemStack.isSame(s, stack);
+                matcher.add(stack.getItem(), s -> ItemStack.isSame(s, stack));
             } else {
-                return s -> s.getItem() == stack.getItem();
+                matcher.add(stack.getItem(), null);
             }
         }
-        return null;
     }
 
-    private static Predicate<ItemStack> getMatcher(JsonObject obj, Logger logger) {
+    private static void addMatcher(JsonObject obj, ItemMatcher matcher, Logger logger) {
         if (obj.has("empty")) {
             boolean empty = obj.get("empty").getAsBoolean();
-            return s -> s.isEmpty() == empty;
+            matcher.add(null, s -> s.isEmpty() == empty);
+            return;
         }
 
         String name = obj.get("item").getAsString();
         Item item = ForgeRegistries.ITEMS.getValue(new ResourceLocation(name));
         if (item == null) {
             ErrorHandler.error("Unknown item '" + name + "'!");
-            return null;
+            return;
         }
 
-        Predicate<ItemStack> test;
+        // Extra tests that are only done for stacks of the right item
+        Predicate<ItemStack> test = null;
         if (obj.has("damage")) {
             Predicate<Integer> damage = getExpression(obj.get("damage"), logger);
             if (damage == null) {
-                return null;
+                return;
             }
-            test = s -> s.getItem() == item && damage.test(s.getDamageValue());
-        } else {
-            test = s -> s.getItem() == item;
+            test = s -> damage.test(s.getDamageValue());
         }
 
         if (obj.has("count")) {
             Predicate<Integer> count = getExpression(obj.get("count"), logger);
             if (count != null) {
-                Predicate<ItemStack> finalTest = test;
-                test = s -> finalTest.test(s) && count.test(s.getCount());
+                test = and(test, s -> count.test(s.getCount()));
             }
         }
         if (obj.has("ore")) {
@@ -871,118 +792,77 @@ public class CommonRuleEvaluator {
 //            int oreId = OreDictionary.getOreID(obj.get("ore").getAsString());
 //            Predicate<ItemStack> finalTest = test;
 //            test = s -> finalTest.test(s) && isMatchingOreId(s.isEmpty() ? EMPTYINTS : OreDictionary.getOreIDs(s), oreId);
-            test = s -> false;
+            return;
         }
         if (obj.has("mod")) {
             String mod = obj.get("mod").getAsString();
-            Predicate<ItemStack> finalTest = test;
-            test = s -> finalTest.test(s) && "mod".equals(s.getItem().getRegistryName().getNamespace());
+            test = and(test, s -> mod.equals(s.getItem().getRegistryName().getNamespace()));
         }
         if (obj.has("nbt")) {
-            List<Predicate<CompoundNBT>> nbtMatchers = getNbtMatchers(obj, logger);
-            if (nbtMatchers != null) {
-                Predicate<ItemStack> finalTest = test;
-                test = s -> finalTest.test(s) && nbtMatchers.stream().allMatch(p -> p.test(s.getTag()));
+            NbtMatcher nbtMatcher = getNbtMatcher(obj, logger);
+            if (nbtMatcher != null) {
+                test = and(test, s -> nbtMatcher.test(s.getTag()));
             }
         }
         if (obj.has("energy")) {
             Predicate<Integer> energy = getExpression(obj.get("energy"), logger);
             if (energy != null) {
-                Predicate<ItemStack> finalTest = test;
-                test = s -> finalTest.test(s) && energy.test(getEnergy(s));
+                test = and(test, s -> energy.test(getEnergy(s)));
             }
         }
 
-        return test;
-    }
-
-    private static int getEnergy(ItemStack stack) {
-        return stack.getCapability(CapabilityEnergy.ENERGY).map(IEnergyStorage::getEnergyStored).orElse(0);
+        matcher.add(item, test);
     }
 
-    private boolean contains(IWorld world, BlockPos pos, @Nullable Direction side, @Nonnull List<Predicate<ItemStack>> matchers) {
-        TileEntity tileEntity = world.getBlockEntity(pos);
-        if (tileEntity != null) {
-            return tileEntity.getCapability(CapabilityItemHandler.ITEM_HANDLER_CAPABILITY, side).map(h -> {
-                for (int i = 0 ; i < h.getSlots() ; i++) {
-                    ItemStack stack = h.getStackInSlot(i);
-                    if (!stack.isEmpty()) {
-                        for (Predicate<ItemStack> matcher : matchers) {
-                            if (matcher.test(stack)) {
-                                return true;
-                            }
-                        }
-                    }
-                }
-                return false;
-            }).orElse(false);
-        }
-        return false;
+    private static Predicate<ItemStack> and(@Nullable Predicate<ItemStack> test, Predicate<ItemStack> extra) {
+        return test == null ? extra : test.and(extra);
     }
 
-    private int getEnergy(IWorld world, BlockPos pos, @Nullable Direction side) {
-        TileEntity tileEntity = world.getBlockEntity(pos);
-        if (tileEntity != null) {
-            return tileEntity.getCapability(CapabilityEnergy.ENERGY, side).map(IEnergyStorage::getEnergyStored).orElse(0);
-        }
-        return 0;
+    private static int getEnergy(ItemStack stack) {
+        return stack.getCapability(CapabilityEnergy.ENERGY).map(IEnergyStorage::getEnergyStored).orElse(0);
     }
 
-    private static List<Predicate<CompoundNBT>> getNbtMatchers(JsonObject obj, Logger logger) {
+    private static NbtMatcher getNbtMatcher(JsonObject obj, Logger logger) {
         JsonArray nbtArray = obj.getAsJsonArray("nbt");
-        return getNbtMatchers(nbtArray, logger);
+        List<NbtMatcher.Node> nodes = getNbtNodes(nbtArray, logger);
+        return nodes == null ? null : new NbtMatcher(nodes);
     }
 
-    private static List<Predicate<CompoundNBT>> getNbtMatchers(JsonArray nbtArray, Logger logger) {
-        List<Predicate<CompoundNBT>> nbtMatchers = new ArrayList<>();
+    private static List<NbtMatcher.Node> getNbtNodes(JsonArray nbtArray, Logger logger) {
+        List<NbtMatcher.Node> nodes = new ArrayList<>();
         for (JsonElement element : nbtArray) {
             JsonObject o = element.getAsJsonObject();
             String tag = o.get("tag").getAsString();
             if (o.has("contains")) {
-                List<Predicate<CompoundNBT>> subMatchers = getNbtMatchers(o.getAsJsonArray("contains"), logger);
-                nbtMatchers.add(tagCompound -> {
-                    if (tagCompound != null) {
-                        ListNBT list = tagCompound.getList(tag, Constants.NBT.TAG_COMPOUND);
-                        for (INBT base : list) {
-                            for (Predicate<CompoundNBT> matcher : subMatchers) {
-                                if (matcher.test((CompoundNBT) base)) {
-                                    return true;
-                                }
-                            }
-                        }
-                    }
-                    return false;
-                });
+                List<NbtMatcher.Node> subNodes = getNbtNodes(o.getAsJsonArray("contains"), logger);
+                if (subNodes == null) {
+                    return null;
+                }
+                nodes.add(NbtMatcher.anyInList(tag, subNodes));
             } else {
                 Predicate<Integer> nbt = getExpression(o.get("value"), logger);
                 if (nbt == null) {
                     return null;
                 }
-                nbtMatchers.add(tagCompound -> nbt.test(tagCompound.getInt(tag)));
+                nodes.add(NbtMatcher.value(tag, nbt));
             }
 
         }
-        return nbtMatchers;
+        return nodes;
     }
 
 
-    public static List<Predicate<ItemStack>> getItems(List<String> itemNames, Logger logger) {
-        List<Predicate<ItemStack>> items = new ArrayList<>();
+    public static ItemMatcher getItems(List<String> itemNames, Logger logger) {
+        ItemMatcher items = new ItemMatcher();
         for (String json : itemNames) {
             JsonParser parser = new JsonParser();
             JsonElement element = parser.parse(json);
             if (element.isJsonPrimitive()) {
                 String name = element.getAsString();
-                Predicate<ItemStack> matcher = getMatcher(name, logger);
-                if (matcher != null) {
-                    items.add(matcher);
-                }
+                addMatcher(name, items, logger);
             } else if (element.isJsonObject()) {
                 JsonObject obj = element.getAsJsonObject();
-                Predicate<ItemStack> matcher = getMatcher(obj, logger);
-                if (matcher != null) {
-                    items.add(matcher);
-                }
+                addMatcher(obj, items, logger);
             } else {
                 ErrorHandler.error("Item description '" + json + "' is not valid!");
             }
@@ -991,101 +871,58 @@ public class CommonRuleEvaluator {
     }
 
     public void addHelmetCheck(AttributeMap map) {
-        List<Predicate<ItemStack>> items = getItems(map.getList(HELMET), logger);
+        ItemMatcher items = getItems(map.getList(HELMET), logger);
         addArmorCheck(items, EquipmentSlotType.HEAD);
     }
 
     public void addChestplateCheck(AttributeMap map) {
-        List<Predicate<ItemStack>> items = getItems(map.getList(CHESTPLATE), logger);
+        ItemMatcher items = getItems(map.getList(CHESTPLATE), logger);
         addArmorCheck(items, EquipmentSlotType.CHEST);
     }
 
     public void addLeggingsCheck(AttributeMap map) {
-        List<Predicate<ItemStack>> items = getItems(map.getList(LEGGINGS), logger);
+        ItemMatcher items = getItems(map.getList(LEGGINGS), logger);
         addArmorCheck(items, EquipmentSlotType.LEGS);
     }
 
     public void addBootsCheck(AttributeMap map) {
-        List<Predicate<ItemStack>> items = getItems(map.getList(BOOTS), logger);
+        ItemMatcher items = getItems(map.getList(BOOTS), logger);
         addArmorCheck(items, EquipmentSlotType.FEET);
     }
 
-    private void addArmorCheck(List<Predicate<ItemStack>> items, EquipmentSlotType slot) {
+    private void addArmorCheck(ItemMatcher items, EquipmentSlotType slot) {
+        EquipmentTest test = new EquipmentTest(items, slot);
         checks.add((event,query) -> {
             PlayerEntity player = query.getPlayer(event);
-            if (player != null) {
-                ItemStack armorItem = player.getItemBySlot(slot);
-                if (!armorItem.isEmpty()) {
-                    for (Predicate<ItemStack> item : items) {
-                        if (item.test(armorItem)) {
-                            return true;
-                        }
-                    }
-                }
-            }
-            return false;
+            return player != null && test.test(player);
         });
     }
 
     public void addHeldItemCheck(AttributeMap map, Key<String> key) {
-        List<Predicate<ItemStack>> items = getItems(map.getList(key), logger);
+        ItemMatcher items = getItems(map.getList(key), logger);
+        EquipmentTest mainhand = new EquipmentTest(items, EquipmentSlotType.MAINHAND);
         checks.add((event,query) -> {
             PlayerEntity player = query.getPlayer(event);
-            if (player != null) {
-                ItemStack mainhand = player.getMainHandItem();
-                if (!mainhand.isEmpty()) {
-                    for (Predicate<ItemStack> item : items) {
-                        if (item.test(mainhand)) {
-                            return true;
-                        }
-                    }
-                }
-            }
-            return false;
+            return player != null && mainhand.test(player);
         });
     }
 
     public void addOffHandItemCheck(AttributeMap map) {
-        List<Predicate<ItemStack>> items = getItems(map.getList(OFFHANDITEM), logger);
+        ItemMatcher items = getItems(map.getList(OFFHANDITEM), logger);
+        EquipmentTest offhand = new EquipmentTest(items, EquipmentSlotType.OFFHAND);
         checks.add((event,query) -> {
             PlayerEntity player = query.getPlayer(event);
-            if (player != null) {
-                ItemStack offhand = player.getOffhandItem();
-                if (!offhand.isEmpty()) {
-                    for (Predicate<ItemStack> item : items) {
-                        if (item.test(offhand)) {
-                            return true;
-                        }
-                    }
-                }
-            }
-            return false;
+            return player != null && offhand.test(player);
         });
     }
 
     public void addBothHandsItemCheck(AttributeMap map) {
-        List<Predicate<ItemStack>> items = getItems(map.getList(BOTHHANDSITEM), logger);
+        ItemMatcher items = getItems(map.getList(BOTHHANDSITEM), logger);
+        EquipmentTest offhand = new EquipmentTest(items, EquipmentSlotType.OFFHAND);
+        EquipmentTest mainhand = new EquipmentTest(items, EquipmentSlotType.MAINHAND);
         checks.add((event,query) -> {
             PlayerEntity player = query.getPlayer(event);
-            if (player != null) {
-                ItemStack offhand = player.getOffhandItem();
-                if (!offhand.isEmpty()) {
-                    for (Predicate<ItemStack> item : items) {
-                        if (item.test(offhand)) {
-                            return true;
-                        }
-                    }
-                }
-                ItemStack mainhand = player.getMainHandItem();
-                if (!mainhand.isEmpty()) {
-                    for (Predicate<ItemStack> item : items) {
-                        if (item.test(mainhand)) {
-                            return true;
-                        }
-                    }
-                }
-            }
-            return false;
+            return player != null && (offhand.test(player) || mainhand.test(player));
         });
     }
 
@@ -1142,55 +979,63 @@ public class CommonRuleEvaluator {
     }
 
     private void addGameStageCheck(AttributeMap map) {
-        String stage = map.get(GAMESTAGE);
+        int stage = compatibility.getGameStageId(map.get(GAMESTAGE));
         checks.add((event, query) -> compatibility.hasGameStage(query.getPlayer(event), stage));
     }
 
     private void addInCityCheck(AttributeMap map) {
-        if (map.get(INCITY)) {
-            checks.add((event,query) -> compatibility.isCity(query, event));
-        } else {
-            checks.add((event,query) -> !compatibility.isCity(query, event));
-        }
+        boolean value = map.get(INCITY);
+        checks.add((event,query) -> {
+            ChunkSummary summary = ChunkSummary.get(query.getWorld(event), query.getPos(event));
+            if (summary != null) {
+                return summary.hasLostCityFlag(compatibility, IModRuleCompatibilityLayer.LOSTCITY_CITY) == value;
+            }
+            return compatibility.isCity(query, event) == value;
+        });
     }
 
     private void addInStreetCheck(AttributeMap map) {
-        if (map.get(INSTREET)) {
-            checks.add((event,query) -> compatibility.isStreet(query, event));
-        } else {
-            checks.add((event,query) -> !compatibility.isStreet(query, event));
-        }
+        boolean value = map.get(INSTREET);
+        checks.add((event,query) -> {
+            ChunkSummary summary = ChunkSummary.get(query.getWorld(event), query.getPos(event));
+            if (summary != null) {
+                return summary.hasLostCityFlag(compatibility, IModRuleCompatibilityLayer.LOSTCITY_STREET) == value;
+            }
+            return compatibility.isStreet(query, event) == value;
+        });
     }
 
     private void addInSphereCheck(AttributeMap map) {
-        if (map.get(INSPHERE)) {
-            checks.add((event,query) -> compatibility.inSphere(query, event));
-        } else {
-            checks.add((event,query) -> !compatibility.inSphere(query, event));
-        }
+        boolean value = map.get(INSPHERE);
+        checks.add((event,query) -> {
+            ChunkSummary summary = ChunkSummary.get(query.getWorld(event), query.getPos(event));
+            if (summary != null) {
+                return summary.hasLostCityFlag(compatibility, IModRuleCompatibilityLayer.LOSTCITY_SPHERE) == value;
+            }
+            return compatibility.inSphere(query, event) == value;
+        });
     }
 
     private void addInBuildingCheck(AttributeMap map) {
-        if (map.get(INBUILDING)) {
-            checks.add((event,query) -> compatibility.isBuilding(query, event));
-        } else {
-            checks.add((event,query) -> !compatibility.isBuilding(query, event));
-        }
+        boolean value = map.get(INBUILDING);
+        checks.add((event,query) -> {
+            ChunkSummary summary = ChunkSummary.get(query.getWorld(event), query.getPos(event));
+            if (summary != null) {
+                return summary.hasLostCityFlag(compatibility, IModRuleCompatibilityLayer.LOSTCITY_BUILDING) == value;
+            }
+            return compatibility.isBuilding(query, event) == value;
+        });
     }
 
     public void addBaubleCheck(AttributeMap map, Key<String> key, Supplier<int[]> slotSupplier) {
-        List<Predicate<ItemStack>> items = getItems(map.getList(key), logger);
+        ItemMatcher items = getItems(map.getList(key), logger);
         checks.add((event,query) -> {
             PlayerEntity player = query.getPlayer(event);
             if (player != null) {
                 for (int slot : slotSupplier.get()) {
                     ItemStack stack = compatibility.getBaubleStack(player, slot);
-                    if (!stack.isEmpty()) {
-                        for (Predicate<ItemStack> item : items) {
-                            if (item.test(stack)) {
-                                return true;
-                            }
-                        }
+                    if (!stack.isEmpty() && items.test(stack)) {
+                        return true;
                     }
                 }
             }
@@ -63,6 +63,12 @@ public interface CommonRuleKeys {
     Key<String> STATE = Key.create(Type.STRING, "state");
     Key<String> PSTATE = Key.create(Type.STRING, "pstate");
 
+    // Limits
+    Key<Integer> COOLDOWN = Key.create(Type.INTEGER, "cooldown");
+    Key<Boolean> ONCE = Key.create(Type.BOOLEAN, "once");
+    Key<String> RATELIMIT = Key.create(Type.STRING, "ratelimit");
+    Key<String> RATELIMITMODE = Key.create(Type.STRING, "ratelimitmode");
+
     // Outputs
 
     Key<String> ACTION_COMMAND = Key.create(Type.STRING, "command");
@@ -80,6 +86,7 @@ public interface CommonRuleKeys {
     Key<Float> ACTION_SIZEMULTIPLY = Key.create(Type.FLOAT, "sizemultiply");
     Key<Float> ACTION_SIZEADD = Key.create(Type.FLOAT, "sizeadd");
 
+    // <potion>,<duration>,<amplifier>[,<refresh>] (see RuleBase.addPotionsAction)
     Key<String> ACTION_POTION = Key.create(Type.STRING, "potion");
     Key<String> ACTION_HELDITEM = Key.create(Type.JSON, "helditem");
     Key<String> ACTION_ARMORCHEST = Key.create(Type.JSON, "armorchest");
@@ -0,0 +1,135 @@
+package mcjty.tools.rules;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraft.world.storage.WorldSavedData;
+import net.minecraftforge.fml.server.ServerLifecycleHooks;
+
+import java.util.*;
+
+/**
+ * Persistent 'cooldown' and 'once' state of all rules. For every player this keeps the game time
+ * at which a rule can fire again (Long.MAX_VALUE after a 'once' rule fired). Rules are identified
+ * by a stable key (see RulesManager) so the state survives a restart and '/fxcontrol reload'.
+ * Changing a rule gives it a new key and so resets its state
+ */
+public class CooldownStore extends WorldSavedData {
+
+    public static final String NAME = "fxcontrol_cooldowns";
+
+    // Rule keys are interned to small ids so the values of a player can be kept in an array
+    private static final Object2IntOpenHashMap<String> RULE_IDS = new Object2IntOpenHashMap<>();
+    private static final List<String> RULE_KEYS = new ArrayList<>();
+
+    private static CooldownStore instance = null;
+    private static final PlayerSlots.Table<Values> VALUES = new PlayerSlots.Table<>(CooldownStore::getValues);
+
+    static {
+        RULE_IDS.defaultReturnValue(-1);
+    }
+
+    private final Map<UUID, Values> players = new HashMap<>();
+
+    private static class Values {
+        private long[] readyAt = new long[0];
+    }
+
+    public CooldownStore() {
+        super(NAME);
+    }
+
+    public static synchronized int getRuleId(String key) {
+        int id = RULE_IDS.getInt(key);
+        if (id == -1) {
+            id = RULE_KEYS.size();
+            RULE_KEYS.add(key);
+            RULE_IDS.put(key, id);
+        }
+        return id;
+    }
+
+    public static long getReadyAt(PlayerEntity player, int ruleId) {
+        long[] readyAt = VALUES.get(player).readyAt;
+        return ruleId < readyAt.length ? readyAt[ruleId] : 0;
+    }
+
+    public static void setReadyAt(PlayerEntity player, int ruleId, long value) {
+        Values values = VALUES.get(player);
+        if (ruleId >= values.readyAt.length) {
+            values.readyAt = Arrays.copyOf(values.readyAt, Math.max(ruleId + 1, values.readyAt.length * 2));
+        }
+        values.readyAt[ruleId] = value;
+        CooldownStore store = get();
+        if (store != null) {
+            store.setDirty();
+        }
+    }
+
+    private static Values getValues(PlayerEntity player) {
+        CooldownStore store = get();
+        if (store == null) {
+            return new Values();
+        }
+        return store.players.computeIfAbsent(player.getUUID(), uuid -> new Values());
+    }
+
+    private static CooldownStore get() {
+        if (instance == null) {
+            MinecraftServer server = ServerLifecycleHooks.getCurrentServer();
+            if (server == null) {
+                return null;
+            }
+            instance = server.overworld().getDataStorage().computeIfAbsent(CooldownStore::new, NAME);
+        }
+        return instance;
+    }
+
+    public static void clean() {
+        instance = null;
+    }
+
+    @Override
+    public void load(CompoundNBT tag) {
+        players.clear();
+        for (String uuid : tag.getAllKeys()) {
+            CompoundNBT rules = tag.getCompound(uuid);
+            Values values = new Values();
+            for (String key : rules.getAllKeys()) {
+                int id = getRuleId(key);
+                if (id >= values.readyAt.length) {
+                    values.readyAt = Arrays.copyOf(values.readyAt, Math.max(id + 1, values.readyAt.length * 2));
+                }
+                values.readyAt[id] = rules.getLong(key);
+            }
+            players.put(UUID.fromString(uuid), values);
+        }
+    }
+
+    @Override
+    public CompoundNBT save(CompoundNBT tag) {
+        MinecraftServer server = ServerLifecycleHooks.getCurrentServer();
+        ServerWorld overworld = server == null ? null : server.overworld();
+        long now = overworld == null ? 0 : overworld.getGameTime();
+        for (Map.Entry<UUID, Values> entry : players.entrySet()) {
+            CompoundNBT rules = new CompoundNBT();
+            long[] readyAt = entry.getValue().readyAt;
+            for (int id = 0 ; id < readyAt.length ; id++) {
+                // Cooldowns that are over don't have to be remembered
+                if (readyAt[id] > now) {
+                    rules.putLong(getRuleKey(id), readyAt[id]);
+                }
+            }
+            if (!rules.isEmpty()) {
+                tag.put(entry.getKey().toString(), rules);
+            }
+        }
+        return tag;
+    }
+
+    private static synchronized String getRuleKey(int id) {
+        return RULE_KEYS.get(id);
+    }
+}
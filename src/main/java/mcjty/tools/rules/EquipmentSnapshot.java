@@ -0,0 +1,61 @@
+package mcjty.tools.rules;
+
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.inventory.EquipmentSlotType;
+import net.minecraft.item.ItemStack;
+
+/**
+ * The equipment (hands and armor) of a player as last seen by the rules. For every slot
+ * this remembers the stack and a version. The version changes
+ * every time a different stack is seen in the slot or when the game reports an equipment
+ * change (which also covers changes to the stack itself like damage or nbt). Tests can use
+ * the version to remember their result (see EquipmentTest)
+ */
+public class EquipmentSnapshot {
+
+    private static final int SLOTS = EquipmentSlotType.values().length;
+
+    private static final PlayerSlots.Table<EquipmentSnapshot> SNAPSHOTS = new PlayerSlots.Table<>(player -> new EquipmentSnapshot(PlayerSlots.getSlot(player)));
+    // Versions are unique over all snapshots
+    private static long nextVersion = 1;
+
+    private final int playerSlot;
+    private final ItemStack[] stacks = new ItemStack[SLOTS];
+    private final long[] versions = new long[SLOTS];
+
+    private EquipmentSnapshot(int playerSlot) {
+        this.playerSlot = playerSlot;
+    }
+
+    public static EquipmentSnapshot get(PlayerEntity player) {
+        return SNAPSHOTS.get(player);
+    }
+
+    // Called for LivingEquipmentChangeEvent
+    public static void onEquipmentChange(PlayerEntity player, EquipmentSlotType slot, ItemStack stack) {
+        get(player).update(slot.ordinal(), stack);
+    }
+
+    public int getPlayerSlot() {
+        return playerSlot;
+    }
+
+    // Get the current stack in the slot. This also refreshes the snapshot if the stack is different
+    public ItemStack getStack(PlayerEntity player, EquipmentSlotType slot) {
+        ItemStack stack = player.getItemBySlot(slot);
+        int i = slot.ordinal();
+        if (stack != stacks[i]) {
+            update(i, stack);
+        }
+        return stack;
+    }
+
+    public long getVersion(EquipmentSlotType slot) {
+        return versions[slot.ordinal()];
+    }
+
+    private void update(int i, ItemStack stack) {
+        stacks[i] = stack;
+        versions[i] = nextVersion++;
+    }
+}
@@ -0,0 +1,45 @@
+package mcjty.tools.rules;
+
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.inventory.EquipmentSlotType;
+import net.minecraft.item.ItemStack;
+
+import java.util.Arrays;
+
+/**
+ * An item test for an equipment slot of a player. The result is remembered per player
+ * together with the version of the slot in the EquipmentSnapshot so the item test is only
+ * done again when the equipment in that slot changes
+ */
+public class EquipmentTest {
+
+    private final ItemMatcher matcher;
+    private final EquipmentSlotType slot;
+
+    // Indexed by player slot
+    private long[] versions = new long[0];
+    private boolean[] results = new boolean[0];
+
+    public EquipmentTest(ItemMatcher matcher, EquipmentSlotType slot) {
+        this.matcher = matcher;
+        this.slot = slot;
+    }
+
+    public boolean test(PlayerEntity player) {
+        EquipmentSnapshot snapshot = EquipmentSnapshot.get(player);
+        ItemStack stack = snapshot.getStack(player, slot);
+        long version = snapshot.getVersion(slot);
+        int p = snapshot.getPlayerSlot();
+        if (p < versions.length && versions[p] == version) {
+            return results[p];
+        }
+        boolean result = !stack.isEmpty() && matcher.test(stack);
+        if (p >= versions.length) {
+            versions = Arrays.copyOf(versions, p + 8);
+            results = Arrays.copyOf(results, p + 8);
+        }
+        versions[p] = version;
+        results[p] = result;
+        return result;
+    }
+}
@@ -8,6 +8,11 @@ import net.minecraft.world.biome.Biome;
 
 public interface IModRuleCompatibilityLayer {
 
+    byte LOSTCITY_CITY = 1;
+    byte LOSTCITY_STREET = 2;
+    byte LOSTCITY_SPHERE = 4;
+    byte LOSTCITY_BUILDING = 8;
+
     // --------------------
     // Baubles
     // --------------------
@@ -38,6 +43,11 @@ public interface IModRuleCompatibilityLayer {
 
     boolean hasGameStage(PlayerEntity player, String stage);
 
+    // Intern a stage name. Call this when a rule is loaded
+    int getGameStageId(String stage);
+
+    boolean hasGameStage(PlayerEntity player, int stageId);
+
     void addGameStage(PlayerEntity player, String stage);
 
     void removeGameStage(PlayerEntity player, String stage);
@@ -56,6 +66,9 @@ public interface IModRuleCompatibilityLayer {
 
     <T> boolean isBuilding(IEventQuery<T> query, T event);
 
+    // Combination of the LOSTCITY_ flags for a chunk
+    byte getLostCityFlags(IWorld world, int chunkX, int chunkZ);
+
     // --------------------
     // Serene Seasons
     // --------------------
@@ -0,0 +1,101 @@
+package mcjty.tools.rules;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraftforge.items.IItemHandler;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A compiled list of item descriptions indexed by item. Testing a stack does one lookup
+ * for the item of the stack and only runs the extra tests (damage, count, nbt, energy, ...)
+ * of the descriptions for that item. Descriptions that are not about a specific item
+ * (like 'empty') are always tested
+ */
+public class ItemMatcher implements Predicate<ItemStack> {
+
+    private final ReferenceOpenHashSet<Item> items = new ReferenceOpenHashSet<>();
+    private final Reference2ObjectOpenHashMap<Item, List<Predicate<ItemStack>>> refined = new Reference2ObjectOpenHashMap<>();
+    private final List<Predicate<ItemStack>> wildcards = new ArrayList<>();
+
+    // Add an item description. If item is null the test is done for every stack
+    public void add(@Nullable Item item, @Nullable Predicate<ItemStack> test) {
+        if (item == null) {
+            if (test != null) {
+                wildcards.add(test);
+            }
+        } else if (test == null) {
+            items.add(item);
+        } else {
+            refined.computeIfAbsent(item, i -> new ArrayList<>()).add(test);
+        }
+    }
+
+    @Override
+    public boolean test(ItemStack stack) {
+        Item item = stack.getItem();
+        if (items.contains(item)) {
+            return true;
+        }
+        List<Predicate<ItemStack>> tests = refined.get(item);
+        if (tests != null) {
+            for (Predicate<ItemStack> test : tests) {
+                if (test.test(stack)) {
+                    return true;
+                }
+            }
+        }
+        for (Predicate<ItemStack> test : wildcards) {
+            if (test.test(stack)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Test the stacks in an inventory. 'slots' has the slots for every item in the inventory
+    // so that only the slots of items that can match have to be looked at
+    public boolean testInventory(IItemHandler handler, Reference2ObjectMap<Item, IntArrayList> slots) {
+        if (!wildcards.isEmpty()) {
+            for (IntArrayList list : slots.values()) {
+                for (int i = 0 ; i < list.size() ; i++) {
+                    if (testSlot(handler, list.getInt(i), null)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        for (Reference2ObjectMap.Entry<Item, IntArrayList> entry : slots.reference2ObjectEntrySet()) {
+            Item item = entry.getKey();
+            if (items.contains(item) || refined.containsKey(item)) {
+                IntArrayList list = entry.getValue();
+                for (int i = 0 ; i < list.size() ; i++) {
+                    if (testSlot(handler, list.getInt(i), item)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean testSlot(IItemHandler handler, int slot, @Nullable Item item) {
+        if (slot >= handler.getSlots()) {
+            return false;
+        }
+        ItemStack stack = handler.getStackInSlot(slot);
+        // The summary can be a bit older than the inventory
+        if (stack.isEmpty() || (item != null && stack.getItem() != item)) {
+            return false;
+        }
+        return test(stack);
+    }
+}
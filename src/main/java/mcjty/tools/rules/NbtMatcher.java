@@ -0,0 +1,88 @@
+package mcjty.tools.rules;
+
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.INBT;
+import net.minecraft.nbt.ListNBT;
+import net.minecraftforge.common.util.Constants;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A compiled 'nbt' item test. All nodes must match. A value node tests an integer
+ * in the tag and a list node matches if any compound in a list matches any of its child
+ * nodes. Results are not cached here because list elements can change in place. Equipment
+ * tests remember their result per equipment version instead (see EquipmentTest)
+ */
+public class NbtMatcher implements Predicate<CompoundNBT> {
+
+    private final Node[] nodes;
+
+    public NbtMatcher(List<Node> nodes) {
+        this.nodes = nodes.toArray(new Node[0]);
+    }
+
+    @Override
+    public boolean test(@Nullable CompoundNBT tag) {
+        for (Node node : nodes) {
+            if (!node.test(tag)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static Node value(String key, Predicate<Integer> test) {
+        return new ValueNode(key, test);
+    }
+
+    public static Node anyInList(String key, List<Node> elementTests) {
+        return new ListNode(key, elementTests.toArray(new Node[0]));
+    }
+
+    public abstract static class Node {
+        abstract boolean test(@Nullable CompoundNBT tag);
+    }
+
+    private static class ValueNode extends Node {
+        private final String key;
+        private final Predicate<Integer> test;
+
+        private ValueNode(String key, Predicate<Integer> test) {
+            this.key = key;
+            this.test = test;
+        }
+
+        @Override
+        boolean test(@Nullable CompoundNBT tag) {
+            return test.test(tag == null ? 0 : tag.getInt(key));
+        }
+    }
+
+    private static class ListNode extends Node {
+        private final String key;
+        private final Node[] elementTests;
+
+        private ListNode(String key, Node[] elementTests) {
+            this.key = key;
+            this.elementTests = elementTests;
+        }
+
+        @Override
+        boolean test(@Nullable CompoundNBT tag) {
+            if (tag == null) {
+                return false;
+            }
+            ListNBT list = tag.getList(key, Constants.NBT.TAG_COMPOUND);
+            for (INBT base : list) {
+                for (Node node : elementTests) {
+                    if (node.test((CompoundNBT) base)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package mcjty.tools.rules;
+
+import net.minecraft.entity.player.PlayerEntity;
+
+/**
+ * Per rule 'cooldown' and 'once' state. The state itself is kept per player in the CooldownStore
+ * under the key of the rule
+ */
+public class PlayerCooldowns {
+
+    private final int cooldown;
+    private final boolean once;
+
+    private int ruleId;
+
+    public PlayerCooldowns(int cooldown, boolean once) {
+        this.cooldown = cooldown;
+        this.once = once;
+        // Only used for rules that don't get a stable key from the rules manager
+        this.ruleId = CooldownStore.getRuleId("anonymous/" + System.identityHashCode(this));
+    }
+
+    public void setRuleKey(String key) {
+        ruleId = CooldownStore.getRuleId(key);
+    }
+
+    public boolean isBlocked(PlayerEntity player) {
+        return player.getCommandSenderWorld().getGameTime() < CooldownStore.getReadyAt(player, ruleId);
+    }
+
+    // Returns the previous state so that it can be restored if the actions of the rule didn't run
+    public long fire(PlayerEntity player) {
+        long previous = CooldownStore.getReadyAt(player, ruleId);
+        long readyAt = once ? Long.MAX_VALUE : player.getCommandSenderWorld().getGameTime() + cooldown;
+        CooldownStore.setReadyAt(player, ruleId, readyAt);
+        return previous;
+    }
+
+    public void restore(PlayerEntity player, long previous) {
+        CooldownStore.setReadyAt(player, ruleId, previous);
+    }
+}
@@ -0,0 +1,89 @@
+package mcjty.tools.rules;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.entity.player.PlayerEntity;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Hands out a compact slot number for every player seen by the server so that
+ * per-player rule state can be stored in primitive arrays
+ */
+public class PlayerSlots {
+
+    private static final Object2IntOpenHashMap<UUID> SLOTS = new Object2IntOpenHashMap<>();
+    private static int generation = 0;
+
+    static {
+        SLOTS.defaultReturnValue(-1);
+    }
+
+    public static int getSlot(PlayerEntity player) {
+        UUID uuid = player.getUUID();
+        int slot = SLOTS.getInt(uuid);
+        if (slot == -1) {
+            slot = SLOTS.size();
+            SLOTS.put(uuid, slot);
+        }
+        return slot;
+    }
+
+    // Changes every time the slots are reset so that users of the slots know they have to clear their state
+    public static int getGeneration() {
+        return generation;
+    }
+
+    public static void reset() {
+        SLOTS.clear();
+        generation++;
+    }
+
+    /**
+     * A value for every player slot. Values are created on first use and all values are
+     * forgotten when the slots are reset
+     */
+    public static class Table<E> {
+        private final Function<PlayerEntity, E> factory;
+        private final List<E> values = new ArrayList<>();
+        private int tableGeneration = -1;
+
+        public Table(Function<PlayerEntity, E> factory) {
+            this.factory = factory;
+        }
+
+        public E get(PlayerEntity player) {
+            int slot = prepare(player);
+            E value = values.get(slot);
+            if (value == null) {
+                value = factory.apply(player);
+                values.set(slot, value);
+            }
+            return value;
+        }
+
+        // Replace the value for this player. With null the value is created again on the next get()
+        public void set(PlayerEntity player, @Nullable E value) {
+            values.set(prepare(player), value);
+        }
+
+        public void clear() {
+            values.clear();
+        }
+
+        private int prepare(PlayerEntity player) {
+            if (tableGeneration != generation) {
+                values.clear();
+                tableGeneration = generation;
+            }
+            int slot = getSlot(player);
+            while (values.size() <= slot) {
+                values.add(null);
+            }
+            return slot;
+        }
+    }
+}
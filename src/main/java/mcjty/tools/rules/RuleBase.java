@@ -54,6 +54,12 @@ public class RuleBase<T extends RuleBase.EventGetter> {
 
     protected final Logger logger;
     protected final List<Consumer<T>> actions = new ArrayList<>();
+    private PlayerCooldowns cooldowns = null;
+    // Player and previous cooldown state of the current firing of this rule (see runBudgeted)
+    private PlayerEntity firedPlayer = null;
+    private long firedPrevious = 0;
+    private TokenBucket rateLimit = null;
+    private boolean rateLimitConsume = false;
 
     public RuleBase(Logger logger) {
         this.logger = logger;
@@ -116,7 +122,42 @@ public class RuleBase<T extends RuleBase.EventGetter> {
         BlockPos getPosition();
     }
 
+    // Returns true if this rule is on cooldown (or already fired in case of 'once') for this player.
+    // This is tested before all other checks
+    protected boolean isOnCooldown(PlayerEntity player) {
+        return cooldowns != null && player != null && cooldowns.isBlocked(player);
+    }
+
+    // Called when all checks passed. With ratelimitmode 'next' a rule that is over its
+    // rate limit doesn't match so the next rule gets a chance
+    protected boolean passRateLimit() {
+        return rateLimit == null || rateLimitConsume || rateLimit.tryAcquire();
+    }
+
+    // Called before the actions are executed. With ratelimitmode 'consume' a rule that is
+    // over its rate limit still matches (so its result is used) but its actions are skipped
+    protected boolean passActionRateLimit() {
+        return rateLimit == null || !rateLimitConsume || rateLimit.tryAcquire();
+    }
+
+    public TokenBucket getRateLimit() {
+        return rateLimit;
+    }
+
+    // A key that stays the same as long as the rule itself doesn't change. Used to persist the 'cooldown' and 'once' state
+    public void setRuleKey(String key) {
+        if (cooldowns != null) {
+            cooldowns.setRuleKey(key);
+        }
+    }
+
     protected void addActions(AttributeMap map, IModRuleCompatibilityLayer layer) {
+        if (map.has(COOLDOWN) || map.has(ONCE)) {
+            addCooldown(map);
+        }
+        if (map.has(RATELIMIT)) {
+            addRateLimit(map);
+        }
         if (map.has(ACTION_COMMAND)) {
             addCommandAction(map);
         }
@@ -211,37 +252,95 @@ public class RuleBase<T extends RuleBase.EventGetter> {
         }
     }
 
-    private static Map<String, DamageSource> damageMap = null;
+    private static volatile Map<String, DamageSource> damageMap = null;
 
-    private static void addSource(DamageSource source) {
-        damageMap.put(source.getMsgId(), source);
+    private static void addSource(Map<String, DamageSource> map, DamageSource source) {
+        map.put(source.getMsgId(), source);
     }
 
-    private void createDamageMap() {
+    // Rules can be parsed from several threads at once (see RulesManager)
+    private static synchronized void createDamageMap() {
         if (damageMap == null) {
-            damageMap = new HashMap<>();
-            addSource(DamageSource.IN_FIRE);
-            addSource(DamageSource.LIGHTNING_BOLT);
-            addSource(DamageSource.ON_FIRE);
-            addSource(DamageSource.LAVA);
-            addSource(DamageSource.HOT_FLOOR);
-            addSource(DamageSource.IN_WALL);
-            addSource(DamageSource.CRAMMING);
-            addSource(DamageSource.DROWN);
-            addSource(DamageSource.STARVE);
-            addSource(DamageSource.CACTUS);
-            addSource(DamageSource.FALL);
-            addSource(DamageSource.FLY_INTO_WALL);
-            addSource(DamageSource.OUT_OF_WORLD);
-            addSource(DamageSource.GENERIC);
-            addSource(DamageSource.MAGIC);
-            addSource(DamageSource.WITHER);
-            addSource(DamageSource.ANVIL);
-            addSource(DamageSource.FALLING_BLOCK);
-            addSource(DamageSource.DRAGON_BREATH);
+            Map<String, DamageSource> map = new HashMap<>();
+            addSource(map, DamageSource.IN_FIRE);
+            addSource(map, DamageSource.LIGHTNING_BOLT);
+            addSource(map, DamageSource.ON_FIRE);
+            addSource(map, DamageSource.LAVA);
+            addSource(map, DamageSource.HOT_FLOOR);
+            addSource(map, DamageSource.IN_WALL);
+            addSource(map, DamageSource.CRAMMING);
+            addSource(map, DamageSource.DROWN);
+            addSource(map, DamageSource.STARVE);
+            addSource(map, DamageSource.CACTUS);
+            addSource(map, DamageSource.FALL);
+            addSource(map, DamageSource.FLY_INTO_WALL);
+            addSource(map, DamageSource.OUT_OF_WORLD);
+            addSource(map, DamageSource.GENERIC);
+            addSource(map, DamageSource.MAGIC);
+            addSource(map, DamageSource.WITHER);
+            addSource(map, DamageSource.ANVIL);
+            addSource(map, DamageSource.FALLING_BLOCK);
+            addSource(map, DamageSource.DRAGON_BREATH);
             // @todo 1.16
-//            addSource(DamageSource.FIREWORKS);
+//            addSource(map, DamageSource.FIREWORKS);
+            damageMap = map;
+        }
+    }
+
+    // Expensive actions go through the global action budget so that a burst of matching
+    // rules can't run more of them in a single tick than the server can handle
+    protected void addBudgetedAction(int cost, Consumer<T> action) {
+        actions.add(event -> runBudgeted(cost, () -> action.accept(event)));
+    }
+
+    // If the action is dropped because the budget queue is full this firing doesn't count for 'cooldown' and 'once'
+    private void runBudgeted(int cost, Runnable action) {
+        if (!ActionBudget.BUDGET.run(cost, action) && firedPlayer != null) {
+            cooldowns.restore(firedPlayer, firedPrevious);
+            firedPlayer = null;
+        }
+    }
+
+    private void addCooldown(AttributeMap map) {
+        int cooldown = map.has(COOLDOWN) ? map.get(COOLDOWN) : 0;
+        boolean once = map.has(ONCE) && map.get(ONCE);
+        if (cooldown <= 0 && !once) {
+            return;
+        }
+        cooldowns = new PlayerCooldowns(cooldown, once);
+        actions.add(event -> {
+            firedPlayer = event.getPlayer();
+            if (firedPlayer != null) {
+                firedPrevious = cooldowns.fire(firedPlayer);
+            }
+        });
+    }
+
+    private void addRateLimit(AttributeMap map) {
+        String ratelimit = map.get(RATELIMIT);
+        String[] split = StringUtils.split(ratelimit, ',');
+        float perSecond;
+        int burst;
+        try {
+            perSecond = Float.parseFloat(split[0]);
+            burst = split.length > 1 ? Integer.parseInt(split[1]) : Math.max(1, (int) perSecond);
+        } catch (Exception e) {
+            ErrorHandler.error("Bad ratelimit '" + ratelimit + "'! Use <events per second>[,<burst>]");
+            return;
+        }
+        if (perSecond <= 0) {
+            ErrorHandler.error("Bad ratelimit '" + ratelimit + "'! Events per second must be positive");
+            return;
+        }
+        if (map.has(RATELIMITMODE)) {
+            String mode = map.get(RATELIMITMODE).toLowerCase();
+            if ("consume".equals(mode)) {
+                rateLimitConsume = true;
+            } else if (!"next".equals(mode)) {
+                ErrorHandler.error("Unknown ratelimitmode '" + mode + "'! Use 'next' or 'consume'");
+            }
         }
+        rateLimit = new TokenBucket(perSecond, burst);
     }
 
     private void addCommandAction(AttributeMap map) {
@@ -318,7 +417,7 @@ public class RuleBase<T extends RuleBase.EventGetter> {
         }
         if (items.size() == 1) {
             ItemStack item = items.get(0).getRight();
-            actions.add(event -> {
+            addBudgetedAction(ActionBudget.COST_GIVE, event -> {
                 PlayerEntity player = event.getPlayer();
                 if (player != null) {
                     if (!player.inventory.add(item.copy())) {
@@ -328,7 +427,7 @@ public class RuleBase<T extends RuleBase.EventGetter> {
             });
         } else {
             final float total = getTotal(items);
-            actions.add(event -> {
+            addBudgetedAction(ActionBudget.COST_GIVE, event -> {
                 PlayerEntity player = event.getPlayer();
                 if (player != null) {
                     ItemStack item = getRandomItem(items, total);
@@ -486,12 +585,7 @@ public class RuleBase<T extends RuleBase.EventGetter> {
             }
             Block block = ForgeRegistries.BLOCKS.getValue(new ResourceLocation(blockname));
             BlockState state = block.defaultBlockState();
-            actions.add(event -> {
-                BlockPos pos = posFunction.apply(event);
-                if (pos != null) {
-                    event.getWorld().setBlock(pos, state, 3);
-                }
-            });
+            addSetBlock(posFunction, state);
         } else {
             JsonObject obj = element.getAsJsonObject();
             if (!obj.has("block")) {
@@ -520,15 +614,28 @@ public class RuleBase<T extends RuleBase.EventGetter> {
                 }
             }
             BlockState finalState = state;
-            actions.add(event -> {
-                BlockPos pos = posFunction.apply(event);
-                if (pos != null) {
-                    event.getWorld().setBlock(pos, finalState, 3);
-                }
-            });
+            addSetBlock(posFunction, finalState);
         }
     }
 
+    private void addSetBlock(Function<EventGetter, BlockPos> posFunction, BlockState state) {
+        actions.add(event -> {
+            // The position is taken now, the event may be gone when a delayed action runs
+            BlockPos pos = posFunction.apply(event);
+            if (pos == null) {
+                return;
+            }
+            Runnable setblock = () -> event.getWorld().setBlock(pos, state, 3);
+            if (pos.equals(event.getPosition())) {
+                // Changing the block of the event itself must happen while the event is handled
+                // (for example before the block is actually broken) so it is never delayed
+                ActionBudget.BUDGET.runNow(ActionBudget.COST_SETBLOCK, setblock);
+            } else {
+                runBudgeted(ActionBudget.COST_SETBLOCK, setblock);
+            }
+        });
+    }
+
     private void addDropAction(AttributeMap map) {
         final List<Pair<Float, ItemStack>> items = getItemsWeighted(map.getList(ACTION_DROP));
         if (items.isEmpty()) {
@@ -536,7 +643,7 @@ public class RuleBase<T extends RuleBase.EventGetter> {
         }
         if (items.size() == 1) {
             ItemStack item = items.get(0).getRight();
-            actions.add(event -> {
+            addBudgetedAction(ActionBudget.COST_DROP, event -> {
                 if (event.getWorld() instanceof World) {
                     BlockPos pos = event.getPosition();
                     ItemEntity entityItem = new ItemEntity((World)event.getWorld(), pos.getX(), pos.getY(), pos.getZ(), item.copy());
@@ -545,7 +652,7 @@ public class RuleBase<T extends RuleBase.EventGetter> {
             });
         } else {
             final float total = getTotal(items);
-            actions.add(event -> {
+            addBudgetedAction(ActionBudget.COST_DROP, event -> {
                 if (event.getWorld() instanceof World) {
                     BlockPos pos = event.getPosition();
                     ItemStack item = getRandomItem(items, total);
@@ -596,7 +703,7 @@ public class RuleBase<T extends RuleBase.EventGetter> {
         float finalStrength = strength;
         boolean finalFlaming = flaming;
         boolean finalSmoking = smoking;
-        actions.add(event -> {
+        addBudgetedAction(ActionBudget.COST_EXPLOSION, event -> {
             BlockPos pos = event.getPosition();
             if (pos != null) {
                 // @todo 1.15 check if this is right and what to do about finalSmoking
@@ -609,12 +716,16 @@ public class RuleBase<T extends RuleBase.EventGetter> {
     }
 
 
+    // Format: <potion>,<duration>,<amplifier>[,<refresh>]. An effect that is already active with the same
+    // or a higher amplifier is only applied again when its remaining duration is below <refresh> ticks.
+    // Without <refresh> the effect is refreshed every time the rule fires unless it still has the full duration
     private void addPotionsAction(AttributeMap map) {
-        List<EffectInstance> effects = new ArrayList<>();
+        // Every effect is paired with the remaining duration below which the effect is refreshed
+        List<Pair<EffectInstance, Integer>> effects = new ArrayList<>();
         for (String p : map.getList(ACTION_POTION)) {
             String[] splitted = StringUtils.split(p, ',');
-            if (splitted == null || splitted.length != 3) {
-                ErrorHandler.error("Bad potion specifier '" + p + "'! Use <potion>,<duration>,<amplifier>");
+            if (splitted == null || (splitted.length != 3 && splitted.length != 4)) {
+                ErrorHandler.error("Bad potion specifier '" + p + "'! Use <potion>,<duration>,<amplifier>[,<refresh>]");
                 continue;
             }
             Effect potion = ForgeRegistries.POTIONS.getValue(new ResourceLocation(splitted[0]));
@@ -624,20 +735,28 @@ public class RuleBase<T extends RuleBase.EventGetter> {
             }
             int duration = 0;
             int amplifier = 0;
+            int refresh = 0;
             try {
                 duration = Integer.parseInt(splitted[1]);
                 amplifier = Integer.parseInt(splitted[2]);
+                refresh = splitted.length > 3 ? Integer.parseInt(splitted[3]) : duration;
             } catch (NumberFormatException e) {
-                ErrorHandler.error("Bad duration or amplifier integer for '" + p + "'!");
+                ErrorHandler.error("Bad duration, amplifier or refresh integer for '" + p + "'!");
                 continue;
             }
-            effects.add(new EffectInstance(potion, duration, amplifier));
+            effects.add(Pair.of(new EffectInstance(potion, duration, amplifier), refresh));
         }
         if (!effects.isEmpty()) {
-            actions.add(event -> {
+            addBudgetedAction(ActionBudget.COST_POTION, event -> {
                 LivingEntity living = event.getEntityLiving();
                 if (living != null) {
-                    for (EffectInstance effect : effects) {
+                    for (Pair<EffectInstance, Integer> pair : effects) {
+                        EffectInstance effect = pair.getLeft();
+                        EffectInstance current = living.getEffect(effect.getEffect());
+                        if (current != null && current.getAmplifier() >= effect.getAmplifier() && current.getDuration() >= pair.getRight()) {
+                            // Already active and strong enough. Refreshing would only cost an attribute update and a packet
+                            continue;
+                        }
                         EffectInstance neweffect = new EffectInstance(effect.getEffect(), effect.getDuration(), effect.getAmplifier());
                         living.addEffect(neweffect);
                     }
@@ -0,0 +1,47 @@
+package mcjty.tools.rules;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. Instead of storing a token count this keeps track of the
+ * 'theoretical arrival time' of the next event (GCRA) which is equivalent to a token
+ * bucket but can be updated with a single CAS
+ */
+public class TokenBucket {
+
+    private final long interval;        // Nanoseconds per token
+    private final long capacity;        // Burst size expressed in nanoseconds
+    private final AtomicLong tat;
+    private final AtomicLong allowed = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    public TokenBucket(float perSecond, int burst) {
+        this.interval = Math.max(1, (long) (1_000_000_000L / perSecond));
+        this.capacity = interval * Math.max(1, burst);
+        this.tat = new AtomicLong(System.nanoTime());
+    }
+
+    public boolean tryAcquire() {
+        long now = System.nanoTime();
+        while (true) {
+            long current = tat.get();
+            long next = Math.max(current, now) + interval;
+            if (next - now > capacity) {
+                throttled.incrementAndGet();
+                return false;
+            }
+            if (tat.compareAndSet(current, next)) {
+                allowed.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    public long getAllowed() {
+        return allowed.get();
+    }
+
+    public long getThrottled() {
+        return throttled.get();
+    }
+}
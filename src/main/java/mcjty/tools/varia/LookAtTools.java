@@ -1,16 +1,61 @@
 package mcjty.tools.varia;
 
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.minecraft.block.BlockState;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.BlockRayTraceResult;
 import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.RayTraceContext;
 import net.minecraft.util.math.RayTraceResult;
+import net.minecraft.util.math.shapes.VoxelShape;
 import net.minecraft.util.math.vector.Vector3d;
 import net.minecraft.world.IWorld;
+import net.minecraft.world.chunk.AbstractChunkProvider;
+import net.minecraft.world.chunk.Chunk;
+
+import javax.annotation.Nullable;
 
 public class LookAtTools {
 
+    // Maximum number of remembered ray traces before they are all forgotten
+    private static final int MAX_MEMOS = 1024;
+
+    // The last ray trace for every player (key is entity id * 2 + useLiquids)
+    private static final Int2ObjectOpenHashMap<Memo> MEMOS = new Int2ObjectOpenHashMap<>();
+
+    public static void clearMemos() {
+        MEMOS.clear();
+    }
+
+    // The result is remembered per player so that rules (tests and actions) that need the
+    // same ray trace in the same tick share it. The trace is done again as soon as the
+    // player moves or looks elsewhere
     public static RayTraceResult getMovingObjectPositionFromPlayer(IWorld worldIn, PlayerEntity playerIn, boolean useLiquids) {
+        if (worldIn.isClientSide()) {
+            return rayTrace(worldIn, playerIn, useLiquids);
+        }
+        int key = playerIn.getId() * 2 + (useLiquids ? 1 : 0);
+        Memo memo = MEMOS.get(key);
+        if (memo != null && memo.matches(worldIn, playerIn)) {
+            return memo.result;
+        }
+        RayTraceResult result = rayTrace(worldIn, playerIn, useLiquids);
+        if (memo == null) {
+            if (MEMOS.size() >= MAX_MEMOS) {
+                MEMOS.clear();
+            }
+            memo = new Memo();
+            MEMOS.put(key, memo);
+        }
+        memo.set(worldIn, playerIn, result);
+        return result;
+    }
+
+    private static RayTraceResult rayTrace(IWorld worldIn, PlayerEntity playerIn, boolean useLiquids) {
         float pitch = playerIn.xRot;
         float yaw = playerIn.yRot;
         Vector3d vec3 = getPlayerEyes(playerIn);
@@ -27,7 +72,70 @@ public class LookAtTools {
         }
         Vector3d vec31 = vec3.add(f6 * reach, f5 * reach, f7 * reach);
         RayTraceContext context = new RayTraceContext(vec3, vec31, RayTraceContext.BlockMode.COLLIDER, useLiquids ? RayTraceContext.FluidMode.ANY : RayTraceContext.FluidMode.NONE, playerIn);
-        return worldIn.clip(context);
+        return clip(worldIn, context);
+    }
+
+    // Same traversal as IBlockReader.clip() (a voxel DDA) but cells are read directly from
+    // already loaded chunks and air cells are skipped without computing any shapes. Shapes
+    // are only clipped for cells with a block or fluid so the result is the same as vanilla.
+    // Cells in chunks that are not loaded are treated as air
+    private static BlockRayTraceResult clip(IWorld world, RayTraceContext context) {
+        Vector3d from = context.getFrom();
+        Vector3d to = context.getTo();
+        if (!from.equals(to)) {
+            double toX = MathHelper.lerp(-1.0E-7D, to.x, from.x);
+            double toY = MathHelper.lerp(-1.0E-7D, to.y, from.y);
+            double toZ = MathHelper.lerp(-1.0E-7D, to.z, from.z);
+            double fromX = MathHelper.lerp(-1.0E-7D, from.x, to.x);
+            double fromY = MathHelper.lerp(-1.0E-7D, from.y, to.y);
+            double fromZ = MathHelper.lerp(-1.0E-7D, from.z, to.z);
+            int x = MathHelper.floor(fromX);
+            int y = MathHelper.floor(fromY);
+            int z = MathHelper.floor(fromZ);
+            BlockPos.Mutable pos = new BlockPos.Mutable(x, y, z);
+            Cells cells = new Cells(world);
+            BlockRayTraceResult result = cells.hit(context, pos);
+            if (result != null) {
+                return result;
+            }
+
+            double dx = toX - fromX;
+            double dy = toY - fromY;
+            double dz = toZ - fromZ;
+            int stepX = MathHelper.sign(dx);
+            int stepY = MathHelper.sign(dy);
+            int stepZ = MathHelper.sign(dz);
+            double deltaX = stepX == 0 ? Double.MAX_VALUE : stepX / dx;
+            double deltaY = stepY == 0 ? Double.MAX_VALUE : stepY / dy;
+            double deltaZ = stepZ == 0 ? Double.MAX_VALUE : stepZ / dz;
+            double maxX = deltaX * (stepX > 0 ? 1.0D - MathHelper.frac(fromX) : MathHelper.frac(fromX));
+            double maxY = deltaY * (stepY > 0 ? 1.0D - MathHelper.frac(fromY) : MathHelper.frac(fromY));
+            double maxZ = deltaZ * (stepZ > 0 ? 1.0D - MathHelper.frac(fromZ) : MathHelper.frac(fromZ));
+
+            while (maxX <= 1.0D || maxY <= 1.0D || maxZ <= 1.0D) {
+                if (maxX < maxY) {
+                    if (maxX < maxZ) {
+                        x += stepX;
+                        maxX += deltaX;
+                    } else {
+                        z += stepZ;
+                        maxZ += deltaZ;
+                    }
+                } else if (maxY < maxZ) {
+                    y += stepY;
+                    maxY += deltaY;
+                } else {
+                    z += stepZ;
+                    maxZ += deltaZ;
+                }
+                result = cells.hit(context, pos.set(x, y, z));
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        Vector3d v = from.subtract(to);
+        return BlockRayTraceResult.miss(to, Direction.getNearest(v.x, v.y, v.z), new BlockPos(to));
     }
 
     private static Vector3d getPlayerEyes(PlayerEntity playerIn) {
@@ -36,4 +144,74 @@ public class LookAtTools {
         double z = playerIn.getZ();
         return new Vector3d(x, y, z);
     }
+
+    private static class Cells {
+        private final IWorld world;
+        private final AbstractChunkProvider chunkSource;
+        private int chunkX = Integer.MAX_VALUE;
+        private int chunkZ = Integer.MAX_VALUE;
+        private Chunk chunk = null;
+
+        private Cells(IWorld world) {
+            this.world = world;
+            this.chunkSource = world.getChunkSource();
+        }
+
+        @Nullable
+        private BlockRayTraceResult hit(RayTraceContext context, BlockPos pos) {
+            int cx = pos.getX() >> 4;
+            int cz = pos.getZ() >> 4;
+            if (cx != chunkX || cz != chunkZ) {
+                chunkX = cx;
+                chunkZ = cz;
+                chunk = chunkSource.getChunkNow(cx, cz);
+            }
+            if (chunk == null) {
+                return null;
+            }
+            BlockState state = chunk.getBlockState(pos);
+            if (state.isAir()) {
+                return null;
+            }
+            // From here on this is the same as the vanilla test for a single cell
+            Vector3d from = context.getFrom();
+            Vector3d to = context.getTo();
+            VoxelShape blockShape = context.getBlockShape(state, world, pos);
+            BlockRayTraceResult blockResult = world.clipWithInteractionOverride(from, to, pos, blockShape, state);
+            FluidState fluidState = state.getFluidState();
+            VoxelShape fluidShape = context.getFluidShape(fluidState, world, pos);
+            BlockRayTraceResult fluidResult = fluidShape.clip(from, to, pos);
+            double blockDist = blockResult == null ? Double.MAX_VALUE : from.distanceToSqr(blockResult.getLocation());
+            double fluidDist = fluidResult == null ? Double.MAX_VALUE : from.distanceToSqr(fluidResult.getLocation());
+            return blockDist <= fluidDist ? blockResult : fluidResult;
+        }
+    }
+
+    private static class Memo {
+        private IWorld world;
+        private int tick;
+        private double x;
+        private double y;
+        private double z;
+        private float xRot;
+        private float yRot;
+        private RayTraceResult result;
+
+        private boolean matches(IWorld world, PlayerEntity player) {
+            return this.world == world && tick == player.tickCount
+                    && x == player.getX() && y == player.getY() && z == player.getZ()
+                    && xRot == player.xRot && yRot == player.yRot;
+        }
+
+        private void set(IWorld world, PlayerEntity player, RayTraceResult result) {
+            this.world = world;
+            tick = player.tickCount;
+            x = player.getX();
+            y = player.getY();
+            z = player.getZ();
+            xRot = player.xRot;
+            yRot = player.yRot;
+            this.result = result;
+        }
+    }
 }